@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.benchmark;
+
+import grakn.common.concurrent.actor.Actor;
+import grakn.common.concurrent.actor.eventloop.EventLoop;
+import grakn.common.concurrent.actor.eventloop.EventLoopGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ActorBenchmark {
+
+    private static final int ROUND_TRIPS = 1000;
+
+    public static class Counter extends Actor.State<Counter> {
+        private long count;
+
+        Counter(Actor<Counter> self) {
+            super(self);
+        }
+
+        void increment() {
+            count++;
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        protected void exception(Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class Player extends Actor.State<Player> {
+        private Actor<Player> opponent;
+        private CompletableFuture<Void> done;
+        private int remaining;
+
+        Player(Actor<Player> self) {
+            super(self);
+        }
+
+        void serve(Actor<Player> opponent, int rounds, CompletableFuture<Void> done) {
+            this.opponent = opponent;
+            this.remaining = rounds;
+            this.done = done;
+            opponent.tell(player -> player.receive(self()));
+        }
+
+        void receive(Actor<Player> sender) {
+            if (done == null) {
+                sender.tell(player -> player.receive(self())); // the opponent simply returns the ball
+            } else if (--remaining == 0) {
+                done.complete(null);
+            } else {
+                opponent.tell(player -> player.receive(self()));
+            }
+        }
+
+        @Override
+        protected void exception(Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PingPong {
+        @Param({"SAME", "DIFFERENT"})
+        public String eventLoops;
+
+        EventLoopGroup group;
+        Actor<Player> server;
+        Actor<Player> receiver;
+
+        @Setup
+        public void setup() {
+            group = new EventLoopGroup(2, "benchmark");
+            server = Actor.create(group, Player::new);
+            EventLoop eventLoop = server.eventLoop();
+            if (eventLoops.equals("DIFFERENT")) {
+                do {
+                    eventLoop = group.assignEventLoop();
+                } while (eventLoop == server.eventLoop());
+            }
+            receiver = Actor.create(group, eventLoop, Player::new);
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            group.stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SingleActor {
+        EventLoopGroup group;
+        Actor<Counter> counter;
+
+        @Setup
+        public void setup() {
+            // bounded, so that producers which outpace the actor are throttled rather than filling the heap
+            group = new EventLoopGroup(1, "benchmark", new EventLoopGroup.Options()
+                    .mailboxCapacity(1 << 16, EventLoop.OverflowPolicy.BLOCK));
+            counter = Actor.create(group, Counter::new);
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            group.stop();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(ROUND_TRIPS)
+    public void pingPong(PingPong state) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        state.server.tell(player -> player.serve(state.receiver, ROUND_TRIPS, done));
+        done.join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long ask(SingleActor state) {
+        return state.counter.ask(Counter::count).join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void tell(SingleActor state) {
+        state.counter.tell(Counter::increment);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(4)
+    public void fanIn(SingleActor state) {
+        state.counter.tell(Counter::increment);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.benchmark;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BenchmarkMain {
+
+    private static final String RESULT_FILE = "benchmark-results.json";
+
+    /**
+     * Runs JMH with the given arguments, writing JSON results to {@value RESULT_FILE} in the directory `bazel run` was
+     * invoked from, unless the arguments specify a result format or file of their own.
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf") && !jmhArgs.contains("-rff")) {
+            String directory = System.getenv("BUILD_WORKING_DIRECTORY");
+            if (directory == null) directory = ".";
+            jmhArgs.addAll(Arrays.asList("-rf", "json", "-rff", Paths.get(directory, RESULT_FILE).toString()));
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.benchmark;
+
+import grakn.common.collection.Bytes;
+import grakn.common.collection.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static grakn.common.collection.Collections.list;
+import static grakn.common.collection.Collections.map;
+import static grakn.common.collection.Collections.pair;
+import static grakn.common.collection.Collections.set;
+
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CollectionBenchmark {
+
+    @Param({"8", "1024"})
+    public int size;
+
+    private byte[] bytes;
+    private String hex;
+    private Integer[] elements;
+    private Pair<Integer, Integer>[] pairs;
+
+    @Setup
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setup() {
+        bytes = new byte[size];
+        new Random(0).nextBytes(bytes);
+        hex = Bytes.bytesToHexString(bytes);
+        elements = new Integer[size];
+        pairs = new Pair[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = i;
+            pairs[i] = pair(i, i);
+        }
+    }
+
+    @Benchmark
+    public String bytesToHexString() {
+        return Bytes.bytesToHexString(bytes);
+    }
+
+    @Benchmark
+    public byte[] hexStringToBytes() {
+        return Bytes.hexStringToBytes(hex);
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> collectionsMap() {
+        return map(pairs);
+    }
+
+    @Benchmark
+    public Set<Integer> collectionsSet() {
+        return set(elements);
+    }
+
+    @Benchmark
+    public List<Integer> collectionsList() {
+        return list(elements);
+    }
+}
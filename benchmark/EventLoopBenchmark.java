@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.benchmark;
+
+import grakn.common.concurrent.actor.eventloop.EventLoop;
+import grakn.common.concurrent.actor.eventloop.EventLoopGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class EventLoopBenchmark {
+
+    @Param({"MPSC", "LINKED_TRANSFER"})
+    public EventLoop.QueueType queueType;
+
+    private EventLoopGroup group;
+    private EventLoop eventLoop;
+    private volatile boolean ran;
+
+    @Setup
+    public void setup() {
+        group = new EventLoopGroup(1, "benchmark", new EventLoopGroup.Options().queueType(queueType));
+        eventLoop = group.assignEventLoop();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        group.stop();
+    }
+
+    /**
+     * The time from submitting a job to an idle event loop until the submitter observes that it has run.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void submitToRun() {
+        ran = false;
+        eventLoop.submit(() -> ran = true, e -> { throw new RuntimeException(e); });
+        while (!ran) Thread.yield();
+    }
+}
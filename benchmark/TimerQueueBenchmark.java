@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.benchmark;
+
+import grakn.common.concurrent.actor.eventloop.HashedTimingWheel;
+import grakn.common.concurrent.actor.eventloop.LogicalTimerQueue;
+import grakn.common.concurrent.actor.eventloop.TimerQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TimerQueueBenchmark {
+
+    private static final int PENDING = 1 << 16;
+
+    @Param({"HEAP", "WHEEL"})
+    public String timerQueue;
+
+    /**
+     * The percentage of timers which are cancelled before they expire.
+     */
+    @Param({"0", "90"})
+    public int cancelPercentage;
+
+    private TimerQueue<Integer> timers;
+    private TimerQueue.Timer[] pending;
+    private int[] delays;
+    private boolean[] cancels;
+    private long currentMillis;
+    private int next;
+
+    @Setup
+    public void setup() {
+        timers = timerQueue.equals("HEAP") ? new LogicalTimerQueue<>() : new HashedTimingWheel<>(0);
+        pending = new TimerQueue.Timer[PENDING];
+        delays = new int[PENDING];
+        cancels = new boolean[PENDING];
+        Random random = new Random(0);
+        for (int i = 0; i < PENDING; i++) {
+            delays[i] = 1 + random.nextInt(10_000);
+            cancels[i] = random.nextInt(100) < cancelPercentage;
+        }
+    }
+
+    /**
+     * Schedules a timeout, cancels the one scheduled {@value PENDING} operations ago if it was chosen to be
+     * cancelled, then advances time by a millisecond every 16 operations and expires whatever is due.
+     */
+    @Benchmark
+    public void churn(Blackhole blackhole) {
+        int slot = next++ & (PENDING - 1);
+        if (pending[slot] != null && cancels[slot]) pending[slot].cancel();
+        pending[slot] = timers.offer(currentMillis + delays[slot], slot);
+        if ((next & 15) == 0) {
+            currentMillis++;
+            Integer expired;
+            while ((expired = timers.poll(currentMillis)) != null) blackhole.consume(expired);
+        }
+    }
+}
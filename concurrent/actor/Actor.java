@@ -19,36 +19,192 @@ package grakn.common.concurrent.actor;
 
 import grakn.common.concurrent.actor.eventloop.EventLoop;
 import grakn.common.concurrent.actor.eventloop.EventLoopGroup;
+import grakn.common.concurrent.actor.eventloop.EventLoopGroupMetrics;
+import grakn.common.concurrent.actor.eventloop.GlobalSystem;
 
 import javax.annotation.CheckReturnValue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class Actor<STATE extends Actor.State<STATE>> {
     private static String ERROR_SELF_ACTOR_IS_NULL = "The self actor should always be non-null.";
+    private static String ERROR_DEADLINE_PASSED = "The deadline passed before the actor answered.";
     private static String ERROR_STATE_IS_NULL = "Cannot process actor message when the state hasn't been setup. Are you calling the method from state constructor?";
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Actor, ConcurrentHashMap> COALESCING =
+            AtomicReferenceFieldUpdater.newUpdater(Actor.class, ConcurrentHashMap.class, "coalescing");
+
     public STATE state;
     protected final EventLoopGroup eventLoopGroup;
     private final EventLoop eventLoop;
+    private volatile ConcurrentHashMap<Object, Consumer<STATE>> coalescing; // created on first use
 
     public static <NEW_STATE extends State<NEW_STATE>>
         Actor<NEW_STATE> create(EventLoopGroup eventLoopGroup, Function<Actor<NEW_STATE>, NEW_STATE> stateConstructor) {
 
-        Actor<NEW_STATE> actor = new Actor<>(eventLoopGroup);
+        return create(eventLoopGroup, eventLoopGroup.assignEventLoop(), stateConstructor);
+    }
+
+    /**
+     * Creates an actor on a given event loop of the group, e.g. {@code self().eventLoop()} to keep a child actor on
+     * the same event loop as its parent.
+     */
+    public static <NEW_STATE extends State<NEW_STATE>>
+        Actor<NEW_STATE> create(EventLoopGroup eventLoopGroup, EventLoop eventLoop, Function<Actor<NEW_STATE>, NEW_STATE> stateConstructor) {
+
+        Actor<NEW_STATE> actor = new Actor<>(eventLoopGroup, eventLoop);
         actor.state = stateConstructor.apply(actor);
         return actor;
     }
 
-    private Actor(EventLoopGroup eventLoopGroup) {
+    private Actor(EventLoopGroup eventLoopGroup, EventLoop eventLoop) {
         this.eventLoopGroup = eventLoopGroup;
-        this.eventLoop = eventLoopGroup.assignEventLoop();
+        this.eventLoop = eventLoop;
     }
 
     public void tell(Consumer<STATE> job) {
         assert state != null : ERROR_STATE_IS_NULL;
-        eventLoop.submit(() -> job.accept(state), state::exception);
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordTell();
+        eventLoop.submit(() -> accept(job), state::exception);
+    }
+
+    /**
+     * Tells the actor a job, and runs {@code onDone} exactly once when the job has run or failed, e.g. for a
+     * {@link Router} to count the messages it routed to the actor which are not yet done.
+     */
+    void tell(Consumer<STATE> job, Runnable onDone) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordTell();
+        Told<STATE> told = new Told<>(this, job, onDone);
+        eventLoop.submit(told, told);
+    }
+
+    private void accept(Consumer<STATE> job) {
+        eventLoop.runningFor(state);
+        job.accept(state);
+    }
+
+    private <ANSWER> ANSWER apply(Function<STATE, ANSWER> job) {
+        eventLoop.runningFor(state);
+        return job.apply(state);
+    }
+
+    /**
+     * Tells the actor a job ahead of those waiting in its event loop's mailbox, e.g. a cancellation or a heartbeat.
+     */
+    public void tellUrgent(Consumer<STATE> job) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordTell();
+        eventLoop.submitUrgent(() -> accept(job), state::exception);
+    }
+
+    /**
+     * Tells the actor a job which is only worth running until {@code deadlineMs}, as given by
+     * {@link GlobalSystem#time()}. If the deadline has passed by the time the actor reaches the job, it is shed without
+     * being run, and is counted by {@link EventLoop#jobsShed()}.
+     */
+    public void tellBefore(long deadlineMs, Consumer<STATE> job) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordTell();
+        eventLoop.submitBefore(deadlineMs, () -> accept(job), e -> {
+            if (!(e instanceof TimeoutException)) state.exception(e);
+        });
+    }
+
+    /**
+     * Tells the actor a job which supersedes any job told with the same {@code key} that the actor has not yet
+     * reached, e.g. to publish the latest value for a key. The mailbox then holds at most one job per key, however
+     * fast jobs are told, so these jobs are never refused by a bounded mailbox.
+     */
+    public void tellCoalescing(Object key, Consumer<STATE> job) {
+        tellCoalescing(key, job, (pending, latest) -> latest);
+    }
+
+    /**
+     * Tells the actor a job which, if a job with the same {@code key} is still pending, is merged with it in place
+     * rather than queued behind it, as {@code merge.apply(pending, latest)}.
+     */
+    public void tellCoalescing(Object key, Consumer<STATE> job, BinaryOperator<Consumer<STATE>> merge) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordTell();
+        ConcurrentHashMap<Object, Consumer<STATE>> coalescing = coalescing();
+        boolean[] pending = new boolean[1];
+        coalescing.compute(key, (k, previous) -> {
+            pending[0] = previous != null;
+            return previous == null ? job : merge.apply(previous, job);
+        });
+        if (pending[0]) return;
+        // never refused, as a refusal would lose the jobs merged in meanwhile by other callers
+        eventLoop.submitUnbounded(() -> accept(coalescing.remove(key)), e -> {
+            coalescing.remove(key);
+            state.exception(e);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentHashMap<Object, Consumer<STATE>> coalescing() {
+        ConcurrentHashMap<Object, Consumer<STATE>> coalescing = this.coalescing;
+        if (coalescing == null) {
+            COALESCING.compareAndSet(this, null, new ConcurrentHashMap<>());
+            coalescing = this.coalescing;
+        }
+        return coalescing;
+    }
+
+    /**
+     * Runs {@code blocking}, such as file or JDBC I/O, off the actor's event loop, with
+     * {@link EventLoopGroup#executeBlocking(Runnable)}, and then tells the actor {@code continuation} with the result,
+     * so that the state is still only touched on its event loop. Like a reply, the continuation is never refused by a
+     * bounded mailbox. If {@code blocking} throws, the exception is passed to the state instead.
+     */
+    public <RESULT> void offload(Callable<RESULT> blocking, BiConsumer<STATE, RESULT> continuation) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordTell();
+        eventLoopGroup.executeBlocking(() -> {
+            Runnable job;
+            try {
+                RESULT result = blocking.call();
+                job = () -> {
+                    eventLoop.runningFor(state);
+                    continuation.accept(state, result);
+                };
+            } catch (Exception e) {
+                job = () -> state.exception(e);
+            }
+            eventLoop.reply(job, state::exception); // never refused, as the result would be lost
+        });
+    }
+
+    /**
+     * Tells the actor a job only if its mailbox has room for it, so that producers can throttle themselves.
+     *
+     * @return false if the job was not accepted
+     */
+    public boolean tryTell(Consumer<STATE> job) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        return eventLoop.trySubmit(() -> accept(job), state::exception);
     }
 
     @CheckReturnValue
@@ -61,27 +217,312 @@ public class Actor<STATE extends Actor.State<STATE>> {
 
     @CheckReturnValue
     public <ANSWER> CompletableFuture<ANSWER> ask(Function<STATE, ANSWER> job) {
+        return ask(job, false);
+    }
+
+    /**
+     * Asks the actor a job ahead of those waiting in its event loop's mailbox.
+     */
+    @CheckReturnValue
+    public <ANSWER> CompletableFuture<ANSWER> askUrgent(Function<STATE, ANSWER> job) {
+        return ask(job, true);
+    }
+
+    private <ANSWER> CompletableFuture<ANSWER> ask(Function<STATE, ANSWER> job, boolean urgent) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordAsk();
+        CompletableFuture<ANSWER> future = new CompletableFuture<>();
+        Runnable answer = () -> future.complete(apply(job));
+        Consumer<Exception> onError = e -> {
+            if (metrics != null) metrics.recordAskFailure();
+            state.exception(e);
+            future.completeExceptionally(e);
+        };
+        try {
+            if (urgent) eventLoop.submitUrgent(answer, onError);
+            else eventLoop.submit(answer, onError);
+        } catch (RejectedExecutionException e) {
+            if (metrics != null) metrics.recordAskFailure();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Asks the actor a job which is only worth answering until {@code deadlineMs}, as given by
+     * {@link GlobalSystem#time()}. The future fails with a {@link TimeoutException} once the deadline passes, even if
+     * the actor is still running the job, and the job is shed without being run if the actor has not reached it by
+     * then. A timed out future is failed with {@link EventLoopGroup#executeBlocking(Runnable)}, so that the stages
+     * depending on it never run on, and delay, the timer thread of the group.
+     */
+    @CheckReturnValue
+    public <ANSWER> CompletableFuture<ANSWER> askBefore(long deadlineMs, Function<STATE, ANSWER> job) {
         assert state != null : ERROR_STATE_IS_NULL;
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordAsk();
         CompletableFuture<ANSWER> future = new CompletableFuture<>();
-        eventLoop.submit(
-                () -> future.complete(job.apply(state)),
-                e -> {
-                    state.exception(e);
-                    future.completeExceptionally(e);
-                }
-        );
+        Consumer<Exception> onError = e -> {
+            if (future.completeExceptionally(e)) {
+                if (metrics != null) metrics.recordAskFailure();
+                if (!(e instanceof TimeoutException)) state.exception(e);
+            }
+        };
+        EventLoop.ScheduledJob timeout = eventLoop.timeout(deadlineMs, () -> eventLoopGroup.executeBlocking(
+                () -> onError.accept(new TimeoutException(ERROR_DEADLINE_PASSED))
+        ));
+        Runnable answer = () -> {
+            future.complete(apply(job)); // a no-op if the deadline passed while the job ran
+            timeout.cancel();
+        };
+        try {
+            eventLoop.submitBefore(deadlineMs, answer, e -> {
+                timeout.cancel();
+                onError.accept(e);
+            });
+        } catch (RejectedExecutionException e) {
+            timeout.cancel();
+            if (metrics != null) metrics.recordAskFailure();
+            future.completeExceptionally(e);
+        }
         return future;
     }
 
+    /**
+     * Asks the actor a job and passes the answer to {@code callback} on the event loop of {@code asker}, without the
+     * future and wrapping lambdas of {@link #ask(Function)}. If the job fails, the exception is passed to the state of
+     * both actors instead.
+     */
+    public <ANSWER, ASKER extends State<ASKER>> void ask(Function<STATE, ANSWER> job, Actor<ASKER> asker,
+                                                         BiConsumer<ASKER, ANSWER> callback) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        EventLoopGroupMetrics metrics = eventLoopGroup.metrics();
+        if (metrics != null) metrics.recordAsk();
+        Reply<STATE, ASKER, ANSWER> reply = new Reply<>(this, job, asker, callback, metrics);
+        try {
+            eventLoop.submit(reply, reply);
+        } catch (RejectedExecutionException e) {
+            reply.accept(e);
+        }
+    }
+
+    /**
+     * Asks every actor the same job and folds the answers into one result, as
+     * {@link java.util.stream.Stream#reduce(Object, BiFunction, BinaryOperator)} would. Actors sharing an event loop
+     * are asked in one message to it, which reduces their answers before the partial results of all event loops are
+     * combined. The result fails with the first exception thrown by the job or the reduction. Only exceptions thrown
+     * by the job are also passed to the state of the actor which threw them.
+     *
+     * The result is completed on the event loop of the last actor to answer, without a further hop, so dependent
+     * stages attached to it must not block. Use {@link #askAll(Collection, Function, Object, BiFunction,
+     * BinaryOperator, Executor)} to complete it elsewhere.
+     */
+    @CheckReturnValue
+    public static <STATE extends State<STATE>, ANSWER, RESULT> CompletableFuture<RESULT> askAll(
+            Collection<Actor<STATE>> actors, Function<STATE, ANSWER> job, RESULT identity,
+            BiFunction<RESULT, ? super ANSWER, RESULT> reducer, BinaryOperator<RESULT> combiner) {
+
+        Map<EventLoop, List<Actor<STATE>>> actorsByEventLoop = new IdentityHashMap<>();
+        for (Actor<STATE> actor : actors) {
+            assert actor.state != null : ERROR_STATE_IS_NULL;
+            EventLoopGroupMetrics metrics = actor.eventLoopGroup.metrics();
+            if (metrics != null) metrics.recordAsk();
+            actorsByEventLoop.computeIfAbsent(actor.eventLoop, e -> new ArrayList<>()).add(actor);
+        }
+        Gather<RESULT> gather = new Gather<>(identity, combiner, actorsByEventLoop.size());
+        if (actorsByEventLoop.isEmpty()) gather.future.complete(identity);
+
+        for (Map.Entry<EventLoop, List<Actor<STATE>>> entry : actorsByEventLoop.entrySet()) {
+            List<Actor<STATE>> targets = entry.getValue();
+            try {
+                entry.getKey().submit(() -> {
+                    RESULT partial = identity;
+                    for (Actor<STATE> target : targets) {
+                        ANSWER answer;
+                        try {
+                            answer = target.apply(job);
+                        } catch (Exception e) {
+                            EventLoopGroupMetrics metrics = target.eventLoopGroup.metrics();
+                            if (metrics != null) metrics.recordAskFailure();
+                            target.state.exception(e);
+                            gather.fail(e);
+                            return;
+                        }
+                        partial = reducer.apply(partial, answer); // which fails the gather through the error handler
+                    }
+                    gather.add(partial);
+                }, gather::fail);
+            } catch (RejectedExecutionException e) {
+                gather.fail(e);
+            }
+        }
+        return gather.future;
+    }
+
+    /**
+     * Like {@link #askAll(Collection, Function, Object, BiFunction, BinaryOperator)}, but completes the result on
+     * {@code executor}, so that dependent stages attached to it run there rather than on an event loop.
+     */
+    @CheckReturnValue
+    public static <STATE extends State<STATE>, ANSWER, RESULT> CompletableFuture<RESULT> askAll(
+            Collection<Actor<STATE>> actors, Function<STATE, ANSWER> job, RESULT identity,
+            BiFunction<RESULT, ? super ANSWER, RESULT> reducer, BinaryOperator<RESULT> combiner, Executor executor) {
+
+        CompletableFuture<RESULT> result = new CompletableFuture<>();
+        askAll(actors, job, identity, reducer, combiner).whenCompleteAsync((value, e) -> {
+            if (e != null) result.completeExceptionally(e);
+            else result.complete(value);
+        }, executor);
+        return result;
+    }
+
     public EventLoop.ScheduledJob schedule(long deadlineMs, Consumer<STATE> job) {
         assert state != null : ERROR_STATE_IS_NULL;
-        return eventLoop.submit(deadlineMs, () -> job.accept(state), state::exception);
+        return eventLoop.submit(deadlineMs, () -> accept(job), state::exception);
+    }
+
+    /**
+     * Schedules a job every {@code periodMs}, starting at {@code firstMs}, without drifting. See
+     * {@link EventLoop#submitAtFixedRate(long, long, Runnable, Consumer)}.
+     */
+    public EventLoop.ScheduledJob scheduleAtFixedRate(long firstMs, long periodMs, Consumer<STATE> job) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        return eventLoop.submitAtFixedRate(firstMs, periodMs, () -> accept(job), state::exception);
+    }
+
+    /**
+     * Schedules a job at {@code firstMs}, and then {@code delayMs} after each time it finishes.
+     */
+    public EventLoop.ScheduledJob scheduleWithFixedDelay(long firstMs, long delayMs, Consumer<STATE> job) {
+        assert state != null : ERROR_STATE_IS_NULL;
+        return eventLoop.submitWithFixedDelay(firstMs, delayMs, () -> accept(job), state::exception);
     }
 
     public EventLoopGroup eventLoopGroup() {
         return eventLoopGroup;
     }
 
+    public EventLoop eventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * A job told to the actor which runs {@code onDone} once it is done, and also serves as its own error handler. The
+     * handler still gets the exception of a state which throws while handling the failure of the job, but by then
+     * {@code onDone} has already run.
+     */
+    private static class Told<STATE extends State<STATE>> implements Runnable, Consumer<Exception> {
+        private final Actor<STATE> actor;
+        private final Consumer<STATE> job;
+        private final Runnable onDone;
+        private boolean done; // only touched by the thread which runs or fails the job
+
+        private Told(Actor<STATE> actor, Consumer<STATE> job, Runnable onDone) {
+            this.actor = actor;
+            this.job = job;
+            this.onDone = onDone;
+        }
+
+        @Override
+        public void run() {
+            try {
+                actor.accept(job);
+            } catch (Exception e) {
+                actor.state.exception(e);
+            } finally {
+                done();
+            }
+        }
+
+        @Override
+        public void accept(Exception e) {
+            done();
+            actor.state.exception(e);
+        }
+
+        private void done() {
+            if (done) return;
+            done = true;
+            onDone.run();
+        }
+    }
+
+    /**
+     * A single allocation carrying an ask to the actor and its answer back to the asker: it runs first on the event
+     * loop of the actor and then on the event loop of the asker, where it also serves as its own error handler.
+     */
+    private static class Reply<STATE extends State<STATE>, ASKER extends State<ASKER>, ANSWER>
+            implements Runnable, Consumer<Exception> {
+
+        private final Actor<STATE> actor;
+        private final Function<STATE, ANSWER> job;
+        private final Actor<ASKER> asker;
+        private final BiConsumer<ASKER, ANSWER> callback;
+        private final EventLoopGroupMetrics metrics;
+        private boolean answered; // safely published to the asker by the event loop queues
+        private ANSWER answer;
+        private Exception exception;
+
+        private Reply(Actor<STATE> actor, Function<STATE, ANSWER> job, Actor<ASKER> asker,
+                      BiConsumer<ASKER, ANSWER> callback, EventLoopGroupMetrics metrics) {
+            this.actor = actor;
+            this.job = job;
+            this.asker = asker;
+            this.callback = callback;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            if (!answered) {
+                answer = actor.apply(job);
+                answered = true;
+                asker.eventLoop.reply(this, this);
+            } else if (exception != null) {
+                asker.state.exception(exception);
+            } else {
+                asker.eventLoop.runningFor(asker.state);
+                callback.accept(asker.state, answer);
+            }
+        }
+
+        @Override
+        public void accept(Exception e) {
+            if (!answered) {
+                if (metrics != null) metrics.recordAskFailure();
+                if (!(e instanceof RejectedExecutionException)) actor.state.exception(e);
+                exception = e;
+                answered = true;
+                asker.eventLoop.reply(this, this);
+            } else {
+                asker.state.exception(e);
+            }
+        }
+    }
+
+    private static class Gather<RESULT> {
+        private final CompletableFuture<RESULT> future = new CompletableFuture<>();
+        private final BinaryOperator<RESULT> combiner;
+        private RESULT result;
+        private int remaining;
+
+        private Gather(RESULT identity, BinaryOperator<RESULT> combiner, int parts) {
+            this.result = identity;
+            this.combiner = combiner;
+            this.remaining = parts;
+        }
+
+        private synchronized void add(RESULT partial) {
+            if (future.isDone()) return;
+            result = combiner.apply(result, partial);
+            if (--remaining == 0) future.complete(result);
+        }
+
+        private void fail(Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
     public static abstract class State<STATE extends State<STATE>> {
         private final Actor<STATE> self;
 
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor;
+
+import grakn.common.concurrent.actor.eventloop.EventLoopGroup;
+
+import javax.annotation.CheckReturnValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A pool of replicas of an actor, spread across an event loop group, which routes each message to one of them.
+ *
+ * Messages without a key are routed by the {@link Routing} of the router. Messages with a key are routed by a
+ * consistent hash of the key, so all messages with the same key go to the same replica, in order. Resizing the pool
+ * only moves the keys of the replicas added or removed, but messages for a moved key which are still queued at its
+ * previous replica may then be processed after newer ones.
+ */
+public class Router<STATE extends Actor.State<STATE>> {
+    private static final String ERROR_SIZE_NOT_POSITIVE = "A router needs at least one replica, but was given %d.";
+    private static final int VIRTUAL_NODES = 64; // per replica, to spread keys evenly across the hash ring
+
+    private final EventLoopGroup eventLoopGroup;
+    private final Function<Actor<STATE>, STATE> stateConstructor;
+    private final Routing routing;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile Replicas<STATE> replicas;
+
+    public enum Routing { ROUND_ROBIN, LEAST_QUEUE_DEPTH }
+
+    public static <NEW_STATE extends Actor.State<NEW_STATE>>
+        Router<NEW_STATE> create(EventLoopGroup eventLoopGroup, int size, Routing routing,
+                                 Function<Actor<NEW_STATE>, NEW_STATE> stateConstructor) {
+
+        return new Router<>(eventLoopGroup, size, routing, stateConstructor);
+    }
+
+    private Router(EventLoopGroup eventLoopGroup, int size, Routing routing,
+                   Function<Actor<STATE>, STATE> stateConstructor) {
+        if (size < 1) throw new IllegalArgumentException(String.format(ERROR_SIZE_NOT_POSITIVE, size));
+        this.eventLoopGroup = eventLoopGroup;
+        this.stateConstructor = stateConstructor;
+        this.routing = routing;
+        this.replicas = new Replicas<STATE>(Collections.emptyList(), Collections.emptyList())
+                .resize(size, this::createReplica);
+    }
+
+    public void tell(Consumer<STATE> job) {
+        Replicas<STATE> replicas = this.replicas;
+        tell(replicas, select(replicas), job);
+    }
+
+    public void tell(Object key, Consumer<STATE> job) {
+        Replicas<STATE> replicas = this.replicas;
+        tell(replicas, replicas.owner(key), job);
+    }
+
+    @CheckReturnValue
+    public <ANSWER> CompletableFuture<ANSWER> ask(Function<STATE, ANSWER> job) {
+        Replicas<STATE> replicas = this.replicas;
+        return ask(replicas, select(replicas), job);
+    }
+
+    @CheckReturnValue
+    public <ANSWER> CompletableFuture<ANSWER> ask(Object key, Function<STATE, ANSWER> job) {
+        Replicas<STATE> replicas = this.replicas;
+        return ask(replicas, replicas.owner(key), job);
+    }
+
+    /**
+     * @return the replica which the next message without a key would be routed to. Messages sent to it directly are
+     * not counted by {@link Routing#LEAST_QUEUE_DEPTH}.
+     */
+    public Actor<STATE> route() {
+        Replicas<STATE> replicas = this.replicas;
+        return replicas.actors.get(select(replicas));
+    }
+
+    /**
+     * @return the replica which messages with the given key are routed to
+     */
+    public Actor<STATE> route(Object key) {
+        Replicas<STATE> replicas = this.replicas;
+        return replicas.actors.get(replicas.owner(key));
+    }
+
+    /**
+     * Picks the replica for a message without a key. {@link Routing#LEAST_QUEUE_DEPTH} compares the messages each
+     * replica has been routed and not yet done, rather than the depth of its event loop, which replicas sharing an
+     * event loop would all report. Each choice starts looking from the replica after the previous choice's starting
+     * point, so that ties are broken round robin.
+     */
+    private int select(Replicas<STATE> replicas) {
+        int size = replicas.actors.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (routing == Routing.ROUND_ROBIN) return start;
+        int least = start;
+        long leastDepth = replicas.depths.get(start).get();
+        for (int i = 1; i < size && leastDepth > 0; i++) {
+            int replica = (start + i) % size;
+            long depth = replicas.depths.get(replica).get();
+            if (depth < leastDepth) {
+                least = replica;
+                leastDepth = depth;
+            }
+        }
+        return least;
+    }
+
+    private void tell(Replicas<STATE> replicas, int replica, Consumer<STATE> job) {
+        Actor<STATE> actor = replicas.actors.get(replica);
+        if (routing == Routing.ROUND_ROBIN) {
+            actor.tell(job);
+            return;
+        }
+        AtomicLong depth = replicas.depths.get(replica);
+        depth.incrementAndGet();
+        try {
+            actor.tell(job, depth::decrementAndGet);
+        } catch (RejectedExecutionException e) {
+            depth.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private <ANSWER> CompletableFuture<ANSWER> ask(Replicas<STATE> replicas, int replica, Function<STATE, ANSWER> job) {
+        Actor<STATE> actor = replicas.actors.get(replica);
+        if (routing == Routing.ROUND_ROBIN) return actor.ask(job);
+        AtomicLong depth = replicas.depths.get(replica);
+        depth.incrementAndGet();
+        CompletableFuture<ANSWER> answer = actor.ask(job);
+        answer.whenComplete((value, e) -> depth.decrementAndGet());
+        return answer;
+    }
+
+    public List<Actor<STATE>> replicas() {
+        return replicas.actors;
+    }
+
+    public int size() {
+        return replicas.actors.size();
+    }
+
+    /**
+     * Grows the pool with new replicas, or shrinks it by removing the most recently created ones. Removed replicas
+     * receive no further messages from the router, but still process those already sent to them.
+     */
+    public synchronized void resize(int size) {
+        if (size < 1) throw new IllegalArgumentException(String.format(ERROR_SIZE_NOT_POSITIVE, size));
+        replicas = replicas.resize(size, this::createReplica);
+    }
+
+    private Actor<STATE> createReplica() {
+        return Actor.create(eventLoopGroup, stateConstructor);
+    }
+
+    /**
+     * An immutable snapshot of the replicas and of the hash ring over them, replaced as a whole on resizing. The
+     * depth counter of each replica is carried over to the snapshots it remains in.
+     */
+    private static class Replicas<STATE extends Actor.State<STATE>> {
+        private final List<Actor<STATE>> actors;
+        private final List<AtomicLong> depths; // the messages routed to each replica which are not yet done
+        private final long[] ring; // the sorted hashes of every virtual node
+        private final int[] owners; // the index of the replica owning each virtual node of the ring
+
+        private Replicas(List<Actor<STATE>> actors, List<AtomicLong> depths) {
+            this.actors = Collections.unmodifiableList(actors);
+            this.depths = Collections.unmodifiableList(depths);
+            int nodes = actors.size() * VIRTUAL_NODES;
+            long[] entries = new long[nodes];
+            for (int i = 0; i < nodes; i++) entries[i] = hash(i);
+            Arrays.sort(entries);
+            ring = entries;
+            owners = new int[nodes];
+            // virtual node hashes only depend on their number, so replicas keep their share of the ring on resizing
+            for (int i = 0; i < nodes; i++) owners[Arrays.binarySearch(ring, hash(i))] = i / VIRTUAL_NODES;
+        }
+
+        private Replicas<STATE> resize(int size, Supplier<Actor<STATE>> replicaConstructor) {
+            List<Actor<STATE>> resized = new ArrayList<>(actors.subList(0, Math.min(size, actors.size())));
+            List<AtomicLong> resizedDepths = new ArrayList<>(depths.subList(0, resized.size()));
+            while (resized.size() < size) {
+                resized.add(replicaConstructor.get());
+                resizedDepths.add(new AtomicLong());
+            }
+            return new Replicas<>(resized, resizedDepths);
+        }
+
+        /**
+         * @return the index of the replica which messages with the given key are routed to
+         */
+        private int owner(Object key) {
+            int index = Arrays.binarySearch(ring, hash(key.hashCode()));
+            if (index < 0) index = -index - 1; // the first virtual node after the key's hash
+            if (index == ring.length) index = 0;
+            return owners[index];
+        }
+
+        /**
+         * The finaliser of SplitMix64, which spreads consecutive and poorly distributed values across the ring.
+         */
+        private static long hash(long value) {
+            long z = value + 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
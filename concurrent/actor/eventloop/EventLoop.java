@@ -17,93 +17,788 @@
 
 package grakn.common.concurrent.actor.eventloop;
 
-import grakn.common.collection.Collections;
-import grakn.common.collection.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.LinkedTransferQueue;
+import javax.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TransferQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
-// TODO:
-//  This class should be optimised, most specifically, it should probably
-//  use a separate scheduled timer thread event loop for the whole system to
-//  provide efficient and reliable timer events.
 public class EventLoop {
     private static final Logger LOG = LoggerFactory.getLogger(EventLoop.class);
+    private static final String ERROR_MAILBOX_FULL = "The event loop's mailbox is full.";
+    private static final String ERROR_JOB_DROPPED = "The job was dropped from a full event loop mailbox to make room for a newer one.";
+    private static final String ERROR_MAILBOX_FULL_ON_EVENT_LOOP = "The event loop's mailbox is full, and the caller runs on an event loop, so cannot block until there is room.";
+    private static final String ERROR_INTERRUPTED = "Interrupted while waiting for room in the event loop's mailbox.";
+    private static final String ERROR_DEADLINE_PASSED = "The job's deadline passed before it could be run.";
+    private static final String ERROR_STOPPING = "The event loop is stopping.";
+    private static final String ERROR_DISCARDED = "The job was discarded as its event loop was shut down.";
+    private static final String ERROR_PERIOD_NOT_POSITIVE = "The period of a recurring job must be positive, but was %d ms.";
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+    private static final int MAX_URGENT_JOBS_PER_PASS = 64;
+    private static final ThreadLocal<EventLoop> RUNNING = new ThreadLocal<>(); // on the thread running or carrying it
+    private static final AtomicReferenceFieldUpdater<EventLoop, JobQueue> URGENT_JOBS =
+            AtomicReferenceFieldUpdater.newUpdater(EventLoop.class, JobQueue.class, "urgentJobs");
+    private static final AtomicIntegerFieldUpdater<EventLoop> SCHEDULED =
+            AtomicIntegerFieldUpdater.newUpdater(EventLoop.class, "scheduled");
+    private static final AtomicLongFieldUpdater<EventLoop> SUBMITTED =
+            AtomicLongFieldUpdater.newUpdater(EventLoop.class, "submitted");
+    private static final AtomicLongFieldUpdater<EventLoop> COMPLETED =
+            AtomicLongFieldUpdater.newUpdater(EventLoop.class, "completed");
+    private static final AtomicLongFieldUpdater<EventLoop> SHED =
+            AtomicLongFieldUpdater.newUpdater(EventLoop.class, "shed");
+    private static final AtomicLongFieldUpdater<EventLoop> PENDING =
+            AtomicLongFieldUpdater.newUpdater(EventLoop.class, "pending");
+    private static final AtomicIntegerFieldUpdater<EventLoop> BLOCKED_PRODUCERS =
+            AtomicIntegerFieldUpdater.newUpdater(EventLoop.class, "blockedProducers");
 
-    private final TransferQueue<Pair<Runnable, Consumer<Exception>>> jobs = new LinkedTransferQueue<>();
-    private final LogicalTimerQueue<Runnable> scheduledJobs = new LogicalTimerQueue<>();
+    // An actor mailbox is an event loop of its own, so anything an idle one does not need is created on first use
+    private final JobQueue jobs;
+    private volatile JobQueue urgentJobs; // always drained ahead of the mailbox
+    private ArrayDeque<Job> localJobs; // submitted by the event loop to itself, so only touched by its runner
+    private final Job[] batch; // for event loops with a thread, whereas carried ones take their jobs one by one
+    private final int batchSize;
+    private final IdleStrategy idleStrategy;
+    private final TimerService timers;
+    private final boolean ownsTimers;
     private final Thread thread;
+    private final Executor carrier;
+    private volatile int scheduled; // 1 while a carried event loop is submitted to, or being run by, its carrier
+    private final Runnable drain = this::drain;
+    @Nullable
+    private final LongAdder hostedBacklog; // jobs waiting in the event loops carried by this one, if it has a thread
+    private final LongAdder hostBacklog; // the hosted backlog of the event loop carrying this one, if any
+    private final EventLoopMetrics metrics;
+    private final long seed;
+    private Random random; // of the jobs of this event loop, so only touched by its runner
+    private final Shutdown shutdown;
+    private final StallWatchdog watchdog;
+    private StallWatchdog.Watch watch; // of the thread running this event loop, when watched
     private final Consumer<Exception> errorHandler = e -> { LOG.error("An unexpected error has occurred.", e); };
+    private volatile long submitted;
+    private volatile long completed; // only written by the thread running the event loop, or under the termination
+                                     // lock once it has stopped
+    private volatile long shed; // likewise
+    private volatile boolean parked;
+    private volatile boolean stopping;
+    private volatile boolean terminated; // once the thread of this event loop has stopped taking jobs
+    private final Object terminationLock; // for failing the jobs submitted after that, when the event loop has a thread
+    private Thread runner; // only ever compared with the current thread, which always sees its own writes
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private volatile long pending; // admitted jobs not yet taken from the mailbox, when bounded
+    private volatile int blockedProducers;
+    @Nullable
+    private final Object capacityMonitor; // when bounded under BLOCK
 
     private State state;
     private enum State { READY, RUNNING, STOPPED }
 
+    public enum QueueType { MPSC, LINKED_TRANSFER }
+
+    public enum TimerType { HEAP, WHEEL }
+
+    /**
+     * What {@link #submit(Runnable, Consumer)} does when a bounded mailbox is full: throw a
+     * {@link RejectedExecutionException}, remove the oldest submitted job still waiting in the mailbox and fail it
+     * through its error handler to make room, or block the caller until there is room. Dropped jobs are failed right
+     * away on the thread of the caller, so the mailbox never holds more than its capacity. Jobs which are never
+     * refused, such as expired timers and replies, are neither counted against the capacity nor dropped.
+     *
+     * Callers running on any event loop are never blocked, as waiting for the mailbox of another, or of one that their
+     * thread carries, could deadlock. Nor are the callers of a simulated group, whose single thread is the only one
+     * that could make room. Under {@code BLOCK}, their jobs are refused with a {@code RejectedExecutionException}
+     * instead, as under {@code REJECT}.
+     */
+    public enum OverflowPolicy { REJECT, DROP_OLDEST, BLOCK }
+
+    /**
+     * Shared by the event loops of a group, so that a shutdown can tell all of them to discard their jobs, including
+     * those created on demand which the group does not keep track of.
+     */
+    static final class Shutdown {
+        volatile boolean discarding;
+        final LongAdder discarded = new LongAdder();
+    }
+
     public EventLoop(ThreadFactory factory) {
-        thread = factory.newThread(this::loop);
-        state = State.READY;
-        thread.start();
+        this(new TimerService(factory, TimerType.HEAP), true, new EventLoopGroup.Options(), null,
+             new SplittableRandom().nextLong(), new Shutdown(), null, factory, null, null);
+    }
+
+    EventLoop(ThreadFactory factory, TimerService timers, EventLoopGroup.Options options, EventLoopMetrics metrics,
+              long seed, Shutdown shutdown, @Nullable StallWatchdog watchdog) {
+        this(timers, false, options, metrics, seed, shutdown, watchdog, factory, null, null);
+    }
+
+    /**
+     * Creates an event loop without a thread of its own, which instead submits itself to {@code carrier} whenever it
+     * has jobs, and runs at most {@link EventLoopGroup.Options#batchSize(int)} of them before submitting itself again.
+     */
+    EventLoop(Executor carrier, TimerService timers, EventLoopGroup.Options options, EventLoopMetrics metrics,
+              long seed, Shutdown shutdown, @Nullable StallWatchdog watchdog) {
+        this(timers, false, options, metrics, seed, shutdown, watchdog, null, carrier, null);
+    }
+
+    /**
+     * Creates an event loop carried by {@code host}, such as the mailbox of a single actor, whose backlog then counts
+     * towards the {@link #queueDepth()} of the host.
+     */
+    EventLoop(EventLoop host, TimerService timers, EventLoopGroup.Options options, EventLoopMetrics metrics,
+              long seed, Shutdown shutdown, @Nullable StallWatchdog watchdog) {
+        this(timers, false, options, metrics, seed, shutdown, watchdog, null, host::carry, host.hostedBacklog);
+    }
+
+    private EventLoop(TimerService timers, boolean ownsTimers, EventLoopGroup.Options options,
+                      EventLoopMetrics metrics, long seed, Shutdown shutdown,
+                      @Nullable StallWatchdog watchdog, ThreadFactory factory, Executor carrier,
+                      @Nullable LongAdder hostBacklog) {
+        this.timers = timers;
+        this.metrics = metrics;
+        this.seed = seed;
+        this.shutdown = shutdown;
+        this.watchdog = watchdog;
+        this.ownsTimers = ownsTimers;
+        this.carrier = carrier;
+        this.hostBacklog = hostBacklog;
+        if (options.mailboxCapacity != UNBOUNDED && options.overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            jobs = new EvictingJobQueue();
+        } else {
+            jobs = options.queueType == QueueType.MPSC ? new MPSCJobQueue() : new TransferJobQueue();
+        }
+        batchSize = options.batchSize;
+        batch = carrier == null ? new Job[batchSize] : null;
+        hostedBacklog = carrier == null ? new LongAdder() : null;
+        idleStrategy = options.idleStrategy != null ? options.idleStrategy : IdleStrategy.blocking();
+        capacity = options.mailboxCapacity;
+        overflowPolicy = options.overflowPolicy;
+        capacityMonitor = capacity != UNBOUNDED && overflowPolicy == OverflowPolicy.BLOCK ? new Object() : null;
+        terminationLock = carrier == null ? new Object() : null;
+        if (carrier == null) {
+            thread = factory.newThread(this::loop);
+            state = State.READY;
+            thread.start();
+        } else {
+            thread = null;
+            state = State.RUNNING;
+        }
     }
 
     public void submit(Runnable job, Consumer<Exception> onError) {
-        jobs.offer(Collections.pair(job, onError));
+        submit(new Job(job, onError));
+    }
+
+    /**
+     * Submits a job only if there is room for it in the mailbox, regardless of the overflow policy.
+     *
+     * @return false if the mailbox was full and the job was not submitted
+     */
+    public boolean trySubmit(Runnable job, Consumer<Exception> onError) {
+        if (capacity != UNBOUNDED && !tryReserve()) {
+            if (metrics != null) metrics.rejected();
+            return false;
+        }
+        Job admitted = new Job(job, onError);
+        admitted.admitted = capacity != UNBOUNDED;
+        if (capacity == UNBOUNDED && runner == Thread.currentThread()) enqueueLocal(admitted);
+        else enqueue(admitted);
+        return true;
+    }
+
+    /**
+     * Submits a job which is only worth running until {@code deadlineMs}, as given by {@link GlobalSystem#time()}. If
+     * the deadline has passed by the time the event loop reaches the job, the job is shed: it is failed with a
+     * {@link TimeoutException} rather than run.
+     */
+    public void submitBefore(long deadlineMs, Runnable job, Consumer<Exception> onError) {
+        Job expiring = new Job(job, onError);
+        expiring.deadlineMs = deadlineMs;
+        submit(expiring);
+    }
+
+    private void submit(Job job) {
+        if (capacity != UNBOUNDED) admit(job);
+        else if (runner == Thread.currentThread()) {
+            enqueueLocal(job);
+            return;
+        }
+        enqueue(job);
+    }
+
+    /**
+     * Submits a job ahead of those waiting in the mailbox, e.g. a cancellation or a heartbeat. Urgent jobs are never
+     * refused by a bounded mailbox. To not starve the mailbox, the event loop runs at most 64 urgent jobs
+     * before taking another batch from the mailbox.
+     */
+    public void submitUrgent(Runnable job, Consumer<Exception> onError) {
+        Job urgent = new Job(job, onError);
+        if (metrics != null) {
+            metrics.submitted();
+            urgent.submittedNanos = System.nanoTime();
+        }
+        urgentJobs().offer(urgent);
+        wake();
+    }
+
+    private JobQueue urgentJobs() {
+        JobQueue urgentJobs = this.urgentJobs;
+        if (urgentJobs == null) {
+            URGENT_JOBS.compareAndSet(this, null, new MPSCJobQueue());
+            urgentJobs = this.urgentJobs;
+        }
+        return urgentJobs;
+    }
+
+    /**
+     * Submits the reply to a request this event loop made of another. Like expired timers, replies are never refused
+     * by a bounded mailbox, since refusing one would lose the answer the requester is waiting for.
+     */
+    public void reply(Runnable job, Consumer<Exception> onError) {
+        submitInternal(job, onError);
+    }
+
+    /**
+     * Submits a job which a bounded mailbox never refuses, nor counts against its capacity, e.g. one standing for
+     * other jobs which would be lost with it. Unlike {@link #reply(Runnable, Consumer)}, it is queued like
+     * {@link #submit(Runnable, Consumer)} otherwise, so it keeps its order among the jobs of the same caller.
+     */
+    public void submitUnbounded(Runnable job, Consumer<Exception> onError) {
+        Job unbounded = new Job(job, onError);
+        if (capacity == UNBOUNDED && runner == Thread.currentThread()) enqueueLocal(unbounded);
+        else submitInternal(unbounded);
+    }
+
+    /**
+     * Submits a job generated by the event loop machinery itself, e.g. an expired timer, which must never be refused.
+     */
+    void submitInternal(Runnable job, Consumer<Exception> onError) {
+        submitInternal(new Job(job, onError));
+    }
+
+    private void submitInternal(Job job) {
+        enqueue(job); // never admitted, so never counted against the capacity nor dropped
+    }
+
+    private void enqueue(Job job) {
+        if (!job.carried) SUBMITTED.incrementAndGet(this); // a carried event loop counts its own jobs
+        if (hostBacklog != null) hostBacklog.increment();
+        if (metrics != null) {
+            metrics.submitted();
+            job.submittedNanos = System.nanoTime();
+        }
+        jobs.offer(job);
+        wake();
+    }
+
+    private void wake() {
+        if (carrier != null) {
+            if (scheduled == 0 && SCHEDULED.compareAndSet(this, 0, 1)) schedule();
+        } else {
+            if (parked) LockSupport.unpark(thread);
+            // read after offering the job, and written by the thread before its final check, so one of us sees it
+            if (terminated) discardLeftovers();
+        }
+    }
+
+    /**
+     * Submits this event loop, which has no thread of its own, to its carrier. A carrier which refuses it is stopping,
+     * so the jobs are then run, or discarded, right here rather than stranded.
+     */
+    private void schedule() {
+        try {
+            carrier.execute(drain);
+        } catch (RejectedExecutionException e) {
+            drain();
+        }
+    }
+
+    /**
+     * Queues a job submitted by a job of this event loop, e.g. a message between two actors sharing it, without going
+     * through the concurrent mailbox. Local jobs are run before the mailbox is drained again, which cannot reorder
+     * messages from any one sender: every job running here was taken from the mailbox ahead of what remains in it.
+     */
+    private void enqueueLocal(Job job) {
+        if (metrics != null) {
+            metrics.submitted();
+            job.submittedNanos = System.nanoTime();
+        }
+        if (localJobs == null) localJobs = new ArrayDeque<>();
+        localJobs.addLast(job);
+    }
+
+    /**
+     * Admits a job to a bounded mailbox, or fails as the overflow policy says.
+     */
+    private void admit(Job job) {
+        job.admitted = true;
+        if (tryReserve()) return;
+        switch (overflowPolicy) {
+            case REJECT:
+                if (metrics != null) metrics.rejected();
+                throw new RejectedExecutionException(ERROR_MAILBOX_FULL);
+            case DROP_OLDEST:
+                dropOldest();
+                return;
+            case BLOCK:
+                awaitCapacity();
+                return;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private boolean tryReserve() {
+        long current;
+        do {
+            current = pending;
+            if (current >= capacity) return false;
+        } while (!PENDING.compareAndSet(this, current, current + 1));
+        return true;
+    }
+
+    /**
+     * Makes room for a job by removing the oldest admitted job from the mailbox and failing it, whose place against
+     * the capacity the new job then takes. If there is none to remove, the admitted jobs have just been taken by the
+     * event loop, or are still being offered by their producers, so the job is admitted once either has happened.
+     */
+    private void dropOldest() {
+        EvictingJobQueue evicting = (EvictingJobQueue) jobs;
+        while (true) {
+            Job dropped = evicting.evictOldestAdmitted();
+            if (dropped != null) {
+                if (hostBacklog != null) hostBacklog.decrement();
+                if (metrics != null) metrics.dropped();
+                dropped.fail(new RejectedExecutionException(ERROR_JOB_DROPPED));
+                return;
+            }
+            if (tryReserve()) return;
+            Thread.yield();
+        }
+    }
+
+    private void awaitCapacity() {
+        if (RUNNING.get() != null || carrier instanceof Simulation) {
+            if (metrics != null) metrics.rejected();
+            throw new RejectedExecutionException(ERROR_MAILBOX_FULL_ON_EVENT_LOOP);
+        }
+        BLOCKED_PRODUCERS.incrementAndGet(this); // published before re-checking, see notifyBlockedProducers()
+        try {
+            synchronized (capacityMonitor) {
+                while (!tryReserve()) capacityMonitor.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(ERROR_INTERRUPTED, e);
+        } finally {
+            BLOCKED_PRODUCERS.decrementAndGet(this);
+        }
+    }
+
+    private void notifyBlockedProducers() {
+        if (blockedProducers > 0) {
+            synchronized (capacityMonitor) {
+                capacityMonitor.notifyAll();
+            }
+        }
     }
 
     public EventLoop.ScheduledJob submit(long scheduleMs, Runnable job, Consumer<Exception> errorHandler) {
-        return new ScheduledJob(scheduleMs, job, errorHandler);
+        return new ScheduledJob(scheduleMs, 0, false, false, job, errorHandler);
+    }
+
+    /**
+     * Runs {@code onTimeout} on the timer thread once {@code deadlineMs} has passed, unless cancelled first, so that a
+     * request can time out even while this event loop is busy. It must be short and thread-safe, e.g. completing a
+     * future.
+     */
+    public EventLoop.ScheduledJob timeout(long deadlineMs, Runnable onTimeout) {
+        return new ScheduledJob(deadlineMs, 0, false, true, onTimeout, errorHandler);
+    }
+
+    /**
+     * Submits a job first at {@code firstMs} and then every {@code periodMs} after that, measured from its deadlines
+     * rather than from when it actually ran, so that delays do not accumulate. Deadlines which pass while the previous
+     * run is still waiting in the mailbox, e.g. while the event loop is busy, are skipped, so that the event loop
+     * catches up with a single run rather than a burst.
+     */
+    public EventLoop.ScheduledJob submitAtFixedRate(long firstMs, long periodMs, Runnable job,
+                                                    Consumer<Exception> errorHandler) {
+        if (periodMs <= 0) throw new IllegalArgumentException(String.format(ERROR_PERIOD_NOT_POSITIVE, periodMs));
+        return new ScheduledJob(firstMs, periodMs, true, false, job, errorHandler);
+    }
+
+    /**
+     * Submits a job first at {@code firstMs} and then {@code delayMs} after each time it finishes running.
+     */
+    public EventLoop.ScheduledJob submitWithFixedDelay(long firstMs, long delayMs, Runnable job,
+                                                      Consumer<Exception> errorHandler) {
+        if (delayMs <= 0) throw new IllegalArgumentException(String.format(ERROR_PERIOD_NOT_POSITIVE, delayMs));
+        return new ScheduledJob(firstMs, delayMs, false, false, job, errorHandler);
+    }
+
+    /**
+     * @return an estimate of the number of jobs waiting in, or being run from, this event loop's mailbox and the
+     * mailboxes of the event loops it carries
+     */
+    public long queueDepth() {
+        long depth = capacity != UNBOUNDED ? pending : Math.max(0, submitted - completed);
+        return hostedBacklog != null ? depth + hostedBacklog.sum() : depth;
+    }
+
+    /**
+     * @return the number of jobs this event loop has shed, as their deadline passed before they could be run
+     */
+    public long jobsShed() {
+        return shed;
+    }
+
+    /**
+     * Names what the job now running on this event loop runs on behalf of, e.g. the state of an actor, for the stall
+     * watchdog to report should the job run for too long. See {@link EventLoopGroup.Options#watchdog(long)}.
+     */
+    public void runningFor(Object owner) {
+        if (watch != null) watch.owner = owner;
+    }
+
+    /**
+     * @return the event loop running on the current thread, or null if the thread is not running one
+     */
+    @Nullable
+    static EventLoop current() {
+        return RUNNING.get();
+    }
+
+    /**
+     * @return the random stream of this event loop, which may only be used by the jobs it runs. These also get it
+     * from {@link GlobalSystem#random()}, unless a random has been set there.
+     */
+    public Random random() {
+        if (random == null) random = new SplittableRandomAdapter(new SplittableRandom(seed));
+        return random;
     }
 
     public void await() throws InterruptedException {
-        thread.join();
+        if (thread != null) thread.join();
     }
 
+    /**
+     * Stops this event loop once it has run the jobs submitted before this call. Jobs submitted later are failed
+     * through their error handlers. An event loop without a thread of its own is stopped by stopping its carrier
+     * instead.
+     */
     public void stop() throws InterruptedException {
-        submit(() -> state = State.STOPPED, errorHandler);
+        if (thread == null) return;
+        stopping = true;
+        submitInternal(() -> state = State.STOPPED, errorHandler);
         thread.join();
+        if (ownsTimers) timers.stop();
+    }
+
+    /**
+     * Tells this event loop to stop once it has run the jobs submitted so far, without waiting for it to.
+     */
+    void signalStop() {
+        if (thread == null) return;
+        stopping = true;
+        submitInternal(() -> state = State.STOPPED, errorHandler);
+    }
+
+    /**
+     * Runs a job on behalf of an event loop carried by this one, such as the mailbox of a single actor. Once this
+     * event loop is stopping, carried event loops are refused, so that they run their remaining jobs themselves
+     * rather than queue them behind the stop. A carried event loop can still pass this check just before the stop is
+     * submitted, and then be queued behind it, so this event loop also runs every carried event loop left in its
+     * mailbox once it has stopped, see {@link #discardLeftovers()}.
+     */
+    void carry(Runnable job) {
+        if (stopping) throw new RejectedExecutionException(ERROR_STOPPING);
+        Job carried = new Job(job, errorHandler);
+        carried.carried = true;
+        submitInternal(carried);
+    }
+
+    /**
+     * Wakes this event loop up, so that it notices its group discarding jobs.
+     */
+    void signalDiscard() {
+        if (carrier != null) {
+            if (scheduled == 0 && SCHEDULED.compareAndSet(this, 0, 1)) schedule();
+        } else {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return whether the thread of this event loop has stopped, waiting at most until {@code deadlineNanos}
+     */
+    boolean awaitStop(long deadlineNanos) throws InterruptedException {
+        if (thread == null) return true;
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (remainingMillis > 0) thread.join(remainingMillis);
+        return !thread.isAlive();
     }
 
     private void loop() {
         LOG.debug("Started");
+        runner = thread;
+        RUNNING.set(this);
+        if (watchdog != null) watch = watchdog.watch();
         state = State.RUNNING;
 
-        while (state == State.RUNNING) {
-            long currentTime = GlobalSystem.time();
-            Runnable scheduledJob = scheduledJobs.poll(currentTime);
-            if (scheduledJob != null) {
-                scheduledJob.run();
+        int idleCount = 0;
+        while (state == State.RUNNING && !shutdown.discarding) {
+            if (runBatch() == 0) {
+                long idleStart = metrics != null ? System.nanoTime() : 0;
+                idleStrategy.idle(idleCount, this);
+                if (metrics != null) metrics.idle(System.nanoTime() - idleStart);
+                if (idleCount < Integer.MAX_VALUE) idleCount++;
             } else {
-                try {
-                    Pair<Runnable, Consumer<Exception>> job = jobs.poll(scheduledJobs.timeToNext(currentTime), TimeUnit.MILLISECONDS);
-                    if (job != null) {
-                        try {
-                            job.first().run();
-                        } catch (Exception e) {
-                            job.second().accept(e);
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
+                idleCount = 0;
             }
         }
 
+        terminated = true;
+        discardLeftovers();
+        if (watchdog != null) watchdog.release();
         state = State.STOPPED;
         LOG.debug("stopped");
     }
 
+    /**
+     * Fails the jobs left in this event loop once its thread has stopped, whatever the shutdown policy, as nothing
+     * would ever run them otherwise, e.g. jobs which other event loops submitted after this one ran its stop. Jobs
+     * submitted after that are failed by their submitters, one at a time, as the mailbox only has one consumer.
+     */
+    private void discardLeftovers() {
+        synchronized (terminationLock) {
+            discardJobs();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            runner = Thread.currentThread();
+            EventLoop carrying = RUNNING.get(); // the event loop carrying this one, if any
+            RUNNING.set(this);
+            if (watchdog != null) watch = watchdog.watch();
+            try {
+                if (!shutdown.discarding) runBatch();
+                if (shutdown.discarding) discardJobs();
+            } finally {
+                if (watchdog != null) {
+                    watchdog.release();
+                    watch = null;
+                }
+                RUNNING.set(carrying);
+                runner = null;
+            }
+            scheduled = 0;
+            // a producer which found us still scheduled relies on this re-check to not leave its job stranded
+            if (!hasJobs() || !SCHEDULED.compareAndSet(this, 0, 1)) return;
+            if (shutdown.discarding) continue; // the carrier is being shut down too, so discard them right here
+            try {
+                carrier.execute(drain);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the carrier is shutting down, so run the remaining jobs here rather than strand them
+            }
+        }
+    }
+
+    private boolean hasJobs() {
+        JobQueue urgentJobs = this.urgentJobs;
+        return !jobs.isEmpty() || (urgentJobs != null && !urgentJobs.isEmpty())
+                || (localJobs != null && !localJobs.isEmpty());
+    }
+
+    private int runBatch() {
+        long busyNanos = 0;
+        int urgent = 0, local = 0;
+        Job job;
+        // a threaded event loop caps urgent and local jobs separately, to not starve the mailbox, whereas a carried one
+        // runs at most a batch of jobs in all before yielding its carrier
+        int urgentLimit = carrier != null ? Math.min(MAX_URGENT_JOBS_PER_PASS, batchSize) : MAX_URGENT_JOBS_PER_PASS;
+        JobQueue urgentJobs = this.urgentJobs;
+        while (urgentJobs != null && urgent < urgentLimit && (job = urgentJobs.poll()) != null) {
+            busyNanos += run(job);
+            urgent++;
+        }
+        int localLimit = carrier != null ? batchSize - urgent : batchSize;
+        while (localJobs != null && local < localLimit && (job = localJobs.pollFirst()) != null) {
+            busyNanos += run(job);
+            local++;
+        }
+        int mailboxLimit = carrier != null ? batchSize - urgent - local : batchSize;
+        int count = batch != null ? jobs.drain(batch, mailboxLimit) : Math.max(0, mailboxLimit);
+        boolean released = false;
+        int carried = 0;
+        for (int i = 0; i < count; i++) {
+            if (batch != null) {
+                job = batch[i];
+                batch[i] = null;
+            } else if ((job = jobs.poll()) == null) {
+                count = i;
+                break;
+            }
+            if (job.carried) carried++;
+            // capacity is released as jobs leave the mailbox, so jobs being run are not counted against it
+            if (job.admitted) {
+                PENDING.decrementAndGet(this);
+                released = true;
+            }
+            busyNanos += run(job);
+        }
+        if (count > carried) COMPLETED.lazySet(this, completed + count - carried);
+        if (hostBacklog != null && count > 0) hostBacklog.add(-count);
+        if (released) notifyBlockedProducers();
+        if (metrics != null && urgent + local + count > 0) metrics.busy(busyNanos);
+        return urgent + local + count;
+    }
+
+    /**
+     * Fails every job waiting in this event loop, through its error handler, rather than running it. The event loops
+     * carried by this one are run instead, so that they discard their own jobs.
+     */
+    private void discardJobs() {
+        RejectedExecutionException discarded = new RejectedExecutionException(ERROR_DISCARDED);
+        int count = 0, mailboxCount = 0, carriedCount = 0, admittedCount = 0;
+        Job job;
+        JobQueue urgentJobs = this.urgentJobs;
+        while (urgentJobs != null && (job = urgentJobs.poll()) != null) {
+            job.fail(discarded);
+            count++;
+        }
+        while (localJobs != null && (job = localJobs.pollFirst()) != null) {
+            job.fail(discarded);
+            count++;
+        }
+        while ((job = jobs.poll()) != null) {
+            if (job.carried) {
+                run(job);
+                carriedCount++;
+            } else {
+                if (job.admitted) admittedCount++;
+                job.fail(discarded);
+                mailboxCount++;
+            }
+        }
+        if (mailboxCount > 0) COMPLETED.lazySet(this, completed + mailboxCount);
+        if (hostBacklog != null && mailboxCount + carriedCount > 0) hostBacklog.add(-(mailboxCount + carriedCount));
+        if (admittedCount > 0) {
+            PENDING.addAndGet(this, -admittedCount);
+            notifyBlockedProducers();
+        }
+        shutdown.discarded.add(count + mailboxCount);
+        if (metrics != null) metrics.dropped(count + mailboxCount);
+    }
+
+    /**
+     * @return the time spent running the job, if it was measured
+     */
+    private long run(Job job) {
+        if (job.deadlineMs != Long.MAX_VALUE && GlobalSystem.time() >= job.deadlineMs) {
+            SHED.lazySet(this, shed + 1);
+            if (metrics != null) metrics.shed();
+            job.fail(new TimeoutException(ERROR_DEADLINE_PASSED));
+            return 0;
+        }
+        if (metrics == null && watch == null) {
+            job.run();
+            return 0;
+        }
+        long start = System.nanoTime();
+        if (watch != null) watch.started(start);
+        job.run();
+        if (watch != null) watch.finished();
+        if (metrics == null) return 0;
+        long end = System.nanoTime();
+        metrics.run(start - job.submittedNanos, end - start);
+        return end - start;
+    }
+
+    void awaitJobs() {
+        parked = true; // producers check this after offering, and we re-check the queue after publishing it
+        JobQueue urgentJobs = this.urgentJobs;
+        if (jobs.isEmpty() && (urgentJobs == null || urgentJobs.isEmpty())) LockSupport.park(this);
+        parked = false;
+        if (Thread.interrupted()) throw new RuntimeException(new InterruptedException());
+    }
+
+    /**
+     * A job scheduled to run once, or repeatedly when it has a period. A recurring job re-arms the same timer each
+     * time, and is stopped by cancelling it.
+     */
     public class ScheduledJob {
-        private LogicalTimerQueue<Runnable>.LogicalTimedItem timer;
+        long deadlineMs; // handed between the timer thread and the event loop through their mailboxes
+        private final long periodMs;
+        private final boolean fixedRate;
+        private final boolean onTimerThread;
+        private final Runnable job;
+        private final Consumer<Exception> errorHandler;
+        private volatile boolean cancelled;
+        private volatile boolean queued; // a fixed-rate run is waiting in the mailbox, so the next one is skipped
+        TimerQueue.Timer timer; // only accessed by the timer thread
 
-        ScheduledJob(long scheduleMs, Runnable job, Consumer<Exception> errorHandler) {
-            submit(() -> timer = scheduledJobs.offer(scheduleMs, job), errorHandler);
+        ScheduledJob(long deadlineMs, long periodMs, boolean fixedRate, boolean onTimerThread, Runnable job,
+                     Consumer<Exception> errorHandler) {
+            this.deadlineMs = deadlineMs;
+            this.periodMs = periodMs;
+            this.fixedRate = fixedRate;
+            this.onTimerThread = onTimerThread;
+            this.job = job;
+            this.errorHandler = errorHandler;
+            timers.schedule(this);
         }
 
         public void cancel() {
-            submit(() -> timer.cancel(), errorHandler);
+            cancelled = true;
+            timers.cancel(this);
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void expire(long currentMillis) {
+            if (cancelled) return;
+            if (onTimerThread) {
+                new Job(this::run, errorHandler).run();
+            } else if (!queued) {
+                queued = fixedRate;
+                submitInternal(this::run, errorHandler);
+            }
+            if (fixedRate) {
+                long missed = (currentMillis - deadlineMs) / periodMs;
+                deadlineMs += (missed + 1) * periodMs;
+                timer.reschedule(deadlineMs);
+            }
+        }
+
+        private void run() {
+            queued = false;
+            if (cancelled) return;
+            try {
+                job.run();
+            } finally {
+                if (periodMs > 0 && !fixedRate && !cancelled) {
+                    deadlineMs = GlobalSystem.time() + periodMs;
+                    timers.reschedule(this);
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -19,34 +19,398 @@ package grakn.common.concurrent.actor.eventloop;
 
 import grakn.common.concurrent.NamedThreadFactory;
 
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class EventLoopGroup {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
     private final EventLoop[] eventLoops;
-    private int nextIndex;
+    private final List<EventLoop> eventLoopList;
+    private final TimerService timers;
+    private final Placement placement;
+    private final Options options;
+    private final Options actorOptions; // for the mailboxes of single actors, if any
+    private final ExecutorService carrier;
+    private final EventLoopGroupMetrics metrics;
+    private final EventLoopMetrics mailboxMetrics;
+    private final long seed;
+    private final AtomicLong streams = new AtomicLong(); // the random streams handed out so far
+    private final StallWatchdog watchdog;
+    private final String prefix;
+    private final Simulation simulation;
+    private volatile ExecutorService blocking; // created on first use
+    private final Object blockingLock = new Object(); // not the group's monitor, which await() holds while it waits
+    private final EventLoop.Shutdown shutdown = new EventLoop.Shutdown();
+
+    /**
+     * How the actors of a group are run.
+     *
+     * {@code EVENT_LOOPS} runs them on {@code threadCount} event loops, each with its own thread and shared by many
+     * actors. {@code ACTOR_MAILBOXES} gives every actor an event loop of its own, which only occupies a thread while
+     * it has jobs. These run on virtual threads when the JVM provides them, and otherwise on a pool of
+     * {@code threadCount} carrier threads. A slow job then only delays the actor running it, and idle actors cost
+     * no more than their mailbox. Each actor runs up to {@link Options#throughput(int)} messages per turn on a
+     * thread, rather than one task per message.
+     *
+     * {@code FAIR_EVENT_LOOPS} also gives every actor a mailbox of its own, but runs these on {@code threadCount}
+     * event loops, which take turns between the actors with messages. Each actor runs at most
+     * {@link Options#throughput(int)} messages before yielding to the others, so a burst of messages to one actor
+     * only delays the other actors of its event loop by that many messages.
+     */
+    public enum Backend { EVENT_LOOPS, ACTOR_MAILBOXES, FAIR_EVENT_LOOPS }
+
+    /**
+     * Whether {@link #shutdown(ShutdownPolicy, long)} lets event loops run the jobs already submitted to them, or
+     * fails those jobs through their error handlers instead. Either way, scheduled jobs which have not expired yet are
+     * cancelled rather than waited for.
+     */
+    public enum ShutdownPolicy { DRAIN, DISCARD }
 
     public EventLoopGroup(int threadCount, String prefix) {
+        this(threadCount, prefix, new Options());
+    }
+
+    public EventLoopGroup(int threadCount, String prefix, Options options) {
+        this(threadCount, prefix, options, null);
+    }
+
+    /**
+     * Creates a group whose event loops are all carried by the thread running {@code simulation}, regardless of the
+     * backend chosen by {@code options}.
+     */
+    EventLoopGroup(int threadCount, String prefix, Options options, @Nullable Simulation simulation) {
         NamedThreadFactory threadFactory = new NamedThreadFactory(prefix);
-        eventLoops = new EventLoop[threadCount];
-        for (int i = 0; i < threadCount; i++) {
-            eventLoops[i] = new EventLoop(threadFactory);
+        this.prefix = prefix;
+        this.simulation = simulation;
+        this.options = options;
+        actorOptions = simulation == null && options.backend != Backend.EVENT_LOOPS
+                ? options.copy().batchSize(options.throughput) : null;
+        seed = options.seed != null ? options.seed : new SplittableRandom().nextLong();
+        metrics = options.metrics ? new EventLoopGroupMetrics(prefix) : null;
+        watchdog = simulation == null && options.stallThresholdMs > 0
+                ? new StallWatchdog(options.stallThresholdMs, metrics) : null;
+        timers = simulation != null
+                ? simulation.timers() : new TimerService(new NamedThreadFactory(prefix + "::timer"), options.timerType);
+        if (simulation != null) {
+            carrier = null;
+            mailboxMetrics = null;
+            eventLoops = new EventLoop[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                EventLoopMetrics eventLoopMetrics = metrics != null ? metrics.newEventLoopMetrics() : null;
+                eventLoops[i] = new EventLoop(simulation, timers, options, eventLoopMetrics, nextSeed(), shutdown, null);
+            }
+        } else if (options.backend == Backend.ACTOR_MAILBOXES) {
+            ExecutorService virtualThreads = virtualThreadExecutor();
+            carrier = virtualThreads != null ? virtualThreads : Executors.newFixedThreadPool(threadCount, threadFactory);
+            mailboxMetrics = metrics != null ? metrics.newEventLoopMetrics() : null;
+            eventLoops = new EventLoop[0];
+        } else {
+            carrier = null;
+            mailboxMetrics = metrics != null && options.backend == Backend.FAIR_EVENT_LOOPS
+                    ? metrics.newEventLoopMetrics() : null;
+            eventLoops = new EventLoop[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                EventLoopMetrics eventLoopMetrics = metrics != null ? metrics.newEventLoopMetrics() : null;
+                eventLoops[i] = new EventLoop(threadFactory, timers, options, eventLoopMetrics, nextSeed(), shutdown,
+                                              watchdog);
+            }
+        }
+        eventLoopList = Collections.unmodifiableList(Arrays.asList(eventLoops));
+        placement = options.placement != null ? options.placement : Placement.roundRobin();
+        if (metrics != null) {
+            metrics.timers(timers);
+            MetricsRegistry.register(metrics);
+        }
+    }
+
+    public EventLoop assignEventLoop() {
+        if (carrier != null) {
+            return new EventLoop(carrier, timers, actorOptions, mailboxMetrics, nextSeed(), shutdown, watchdog);
+        }
+        EventLoop eventLoop = placement.select(eventLoopList);
+        if (actorOptions == null) return eventLoop;
+        return new EventLoop(eventLoop, timers, actorOptions, mailboxMetrics, nextSeed(), shutdown, watchdog);
+    }
+
+    /**
+     * Runs a task which may block, such as file or JDBC I/O, on an elastic pool of the group rather than on one of its
+     * event loops. The pool runs on virtual threads when the JVM provides them, and otherwise grows a thread for every
+     * task that would otherwise wait. Simulated groups run the task on the thread of the simulation instead.
+     */
+    public void executeBlocking(Runnable task) {
+        if (simulation != null) simulation.execute(task);
+        else blocking().execute(task);
+    }
+
+    private ExecutorService blocking() {
+        if (blocking == null) {
+            synchronized (blockingLock) {
+                if (blocking == null) {
+                    ExecutorService virtualThreads = virtualThreadExecutor();
+                    blocking = virtualThreads != null
+                            ? virtualThreads : Executors.newCachedThreadPool(new NamedThreadFactory(prefix + "::blocking"));
+                }
+            }
         }
-        nextIndex = 0;
+        return blocking;
     }
 
-    public synchronized EventLoop assignEventLoop() {
-        EventLoop eventLoop = eventLoops[nextIndex];
-        nextIndex = (nextIndex + 1) % eventLoops.length;
-        return eventLoop;
+    /**
+     * @return the seed of the random stream of the next event loop, derived from the seed of the group and the number
+     * of streams handed out before it. No lock is taken, so actors can be created while another thread holds the
+     * group, e.g. in {@link #await()}.
+     */
+    private long nextSeed() {
+        return mix(seed + streams.getAndIncrement() * GOLDEN_GAMMA);
+    }
+
+    /**
+     * The finaliser of SplitMix64, so that the streams of consecutive event loops are not shifted copies of each other.
+     */
+    private static long mix(long value) {
+        long z = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the metrics of this group, or null if they are not enabled
+     */
+    @Nullable
+    public EventLoopGroupMetrics metrics() {
+        return metrics;
     }
 
     public synchronized void await() throws InterruptedException {
         for (int i = 0; i < eventLoops.length; i++) {
             eventLoops[i].await();
         }
+        if (carrier != null) carrier.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
     }
 
     public synchronized void stop() throws InterruptedException {
         for (int i = 0; i < eventLoops.length; i++) {
             eventLoops[i].stop();
         }
+        if (carrier != null) {
+            carrier.shutdown();
+            carrier.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        timers.stop();
+        if (blocking != null) blocking.shutdown();
+        if (watchdog != null) watchdog.stop();
+        if (metrics != null) MetricsRegistry.unregister(metrics);
+    }
+
+    /**
+     * Stops all event loops of the group at once, rather than one after another as {@link #stop()} does. Scheduled
+     * jobs which have not expired yet are cancelled. Event loops still draining their jobs once {@code timeoutMs} has
+     * passed are told to discard the rest, but are not waited for any longer.
+     */
+    public synchronized ShutdownReport shutdown(ShutdownPolicy policy, long timeoutMs) throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        int scheduledJobsCancelled = timers.stop();
+        if (policy == ShutdownPolicy.DISCARD) discard();
+        else for (EventLoop eventLoop : eventLoops) eventLoop.signalStop();
+        if (carrier != null) carrier.shutdown();
+
+        boolean completed = true;
+        for (EventLoop eventLoop : eventLoops) completed &= eventLoop.awaitStop(deadlineNanos);
+        if (carrier != null) {
+            completed &= carrier.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        if (!completed) discard();
+        if (blocking != null) blocking.shutdown();
+        if (watchdog != null) watchdog.stop();
+        if (metrics != null) MetricsRegistry.unregister(metrics);
+        return new ShutdownReport(shutdown.discarded.sum(), scheduledJobsCancelled, completed);
+    }
+
+    private void discard() {
+        shutdown.discarding = true;
+        for (EventLoop eventLoop : eventLoops) eventLoop.signalDiscard();
+    }
+
+    /**
+     * @return {@code Executors.newVirtualThreadPerTaskExecutor()} on JVMs which support virtual threads, otherwise null
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public static class ShutdownReport {
+        private final long jobsDiscarded;
+        private final int scheduledJobsCancelled;
+        private final boolean completed;
+
+        ShutdownReport(long jobsDiscarded, int scheduledJobsCancelled, boolean completed) {
+            this.jobsDiscarded = jobsDiscarded;
+            this.scheduledJobsCancelled = scheduledJobsCancelled;
+            this.completed = completed;
+        }
+
+        /**
+         * @return the number of jobs discarded by the time the shutdown returned, which keeps growing if it did not
+         * complete
+         */
+        public long jobsDiscarded() {
+            return jobsDiscarded;
+        }
+
+        /**
+         * @return the number of scheduled jobs cancelled by the shutdown, which had neither expired nor been cancelled
+         * before it, under either policy
+         */
+        public int scheduledJobsCancelled() {
+            return scheduledJobsCancelled;
+        }
+
+        /**
+         * @return whether every event loop stopped before the timeout
+         */
+        public boolean completed() {
+            return completed;
+        }
+
+        @Override
+        public String toString() {
+            return "ShutdownReport{jobsDiscarded=" + jobsDiscarded +
+                    ", scheduledJobsCancelled=" + scheduledJobsCancelled + ", completed=" + completed + "}";
+        }
+    }
+
+    public static class Options {
+        Backend backend = Backend.EVENT_LOOPS;
+        EventLoop.QueueType queueType = EventLoop.QueueType.MPSC;
+        EventLoop.TimerType timerType = EventLoop.TimerType.HEAP;
+        Placement placement;
+        int batchSize = 1;
+        IdleStrategy idleStrategy;
+        int mailboxCapacity = EventLoop.UNBOUNDED;
+        EventLoop.OverflowPolicy overflowPolicy = EventLoop.OverflowPolicy.REJECT;
+        boolean metrics = false;
+        Long seed;
+        int throughput = 16;
+        long stallThresholdMs = 0;
+
+        public Options backend(Backend backend) {
+            this.backend = backend;
+            return this;
+        }
+
+        public Options queueType(EventLoop.QueueType queueType) {
+            this.queueType = queueType;
+            return this;
+        }
+
+        public Options timerType(EventLoop.TimerType timerType) {
+            this.timerType = timerType;
+            return this;
+        }
+
+        public Options placement(Placement placement) {
+            this.placement = placement;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of jobs an event loop takes from its mailbox at a time. Larger batches amortise the
+         * per-wake-up bookkeeping of the loop across many jobs. The default of 1 takes a single job at a time.
+         */
+        public Options batchSize(int batchSize) {
+            if (batchSize < 1) throw new IllegalArgumentException("The batch size must be at least 1.");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Options idleStrategy(IdleStrategy idleStrategy) {
+            this.idleStrategy = idleStrategy;
+            return this;
+        }
+
+        /**
+         * Bounds the mailbox of every event loop in the group, which with {@link Backend#ACTOR_MAILBOXES} is the
+         * mailbox of every actor. Mailboxes are unbounded by default. Under
+         * {@link EventLoop.OverflowPolicy#DROP_OLDEST}, mailboxes use a queue which their producers can remove jobs
+         * from, whatever {@link #queueType(EventLoop.QueueType)} says.
+         */
+        public Options mailboxCapacity(int capacity, EventLoop.OverflowPolicy overflowPolicy) {
+            if (capacity < 1) throw new IllegalArgumentException("The mailbox capacity must be at least 1.");
+            this.mailboxCapacity = capacity;
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Enables the collection of metrics, which are then available from {@link EventLoopGroup#metrics()}, the
+         * {@link MetricsRegistry} and JMX. When disabled, as by default, the cost is a null check per job.
+         */
+        public Options metrics(boolean enabled) {
+            this.metrics = enabled;
+            return this;
+        }
+
+        /**
+         * Sets the number of messages an actor with a mailbox of its own runs before yielding its thread, counting
+         * urgent messages and those it sent itself. With {@link Backend#FAIR_EVENT_LOOPS} that is how long the other
+         * actors of its event loop wait, and with {@link Backend#ACTOR_MAILBOXES} how many messages share one task of
+         * the carrier. Lower values bound the delays between actors more tightly, at the cost of switching between
+         * them more often. The default is 16, and {@link #batchSize(int)} is then ignored for these mailboxes.
+         */
+        public Options throughput(int throughput) {
+            if (throughput < 1) throw new IllegalArgumentException("The throughput must be at least 1.");
+            this.throughput = throughput;
+            return this;
+        }
+
+        /**
+         * Enables a watchdog which logs every job running for longer than {@code stallThresholdMs}, as it delays every
+         * other job of its event loop, together with the owner of the job and the stack of its thread. Stalls are
+         * counted in the group's metrics. The watchdog is disabled by default, and then costs nothing per job.
+         */
+        public Options watchdog(long stallThresholdMs) {
+            if (stallThresholdMs < 1) throw new IllegalArgumentException("The stall threshold must be at least 1 ms.");
+            this.stallThresholdMs = stallThresholdMs;
+            return this;
+        }
+
+        /**
+         * Seeds the random streams of the group's event loops, which are otherwise seeded unpredictably. Event loops
+         * created in the same order then produce the same streams.
+         */
+        public Options seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        Options copy() {
+            Options copy = new Options();
+            copy.backend = backend;
+            copy.queueType = queueType;
+            copy.timerType = timerType;
+            copy.placement = placement;
+            copy.batchSize = batchSize;
+            copy.idleStrategy = idleStrategy;
+            copy.mailboxCapacity = mailboxCapacity;
+            copy.overflowPolicy = overflowPolicy;
+            copy.metrics = metrics;
+            copy.seed = seed;
+            copy.throughput = throughput;
+            copy.stallThresholdMs = stallThresholdMs;
+            return copy;
+        }
     }
 }
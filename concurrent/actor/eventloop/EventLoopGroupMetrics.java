@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of an event loop group, enabled by {@link EventLoopGroup.Options#metrics(boolean)}, and published to the
+ * {@link MetricsRegistry} under the name of the group.
+ */
+public class EventLoopGroupMetrics {
+    private volatile String name;
+    private final List<EventLoopMetrics> eventLoops = new ArrayList<>();
+    private final LongAdder tells = new LongAdder();
+    private final LongAdder asks = new LongAdder();
+    private final LongAdder askFailures = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private TimerService timers;
+
+    EventLoopGroupMetrics(String name) {
+        this.name = name;
+    }
+
+    EventLoopMetrics newEventLoopMetrics() {
+        EventLoopMetrics metrics = new EventLoopMetrics();
+        eventLoops.add(metrics);
+        return metrics;
+    }
+
+    void name(String name) {
+        this.name = name;
+    }
+
+    void timers(TimerService timers) {
+        this.timers = timers;
+    }
+
+    public void recordTell() {
+        tells.increment();
+    }
+
+    public void recordAsk() {
+        asks.increment();
+    }
+
+    public void recordAskFailure() {
+        askFailures.increment();
+    }
+
+    void recordStall() {
+        stalls.increment();
+    }
+
+    /**
+     * @return the number of jobs reported by the watchdog for running too long, see
+     * {@link EventLoopGroup.Options#watchdog(long)}
+     */
+    public long stalls() {
+        return stalls.sum();
+    }
+
+    /**
+     * @return the name the metrics are registered under, which is the name of the group unless another group with
+     * metrics already had it
+     */
+    public String name() {
+        return name;
+    }
+
+    public List<EventLoopMetrics> eventLoops() {
+        return Collections.unmodifiableList(eventLoops);
+    }
+
+    /**
+     * @return the number of timers the group's timer thread is tracking, including cancelled timers which
+     * {@link LogicalTimerQueue} has yet to discard
+     */
+    public long timerBacklog() {
+        return timers.backlog();
+    }
+
+    public Map<String, Number> snapshot() {
+        Map<String, Number> snapshot = new TreeMap<>();
+        snapshot.put("actors.tells", tells.sum());
+        snapshot.put("actors.asks", asks.sum());
+        snapshot.put("actors.askFailures", askFailures.sum());
+        snapshot.put("timers.backlog", timerBacklog());
+        snapshot.put("watchdog.stalls", stalls());
+        for (int i = 0; i < eventLoops.size(); i++) {
+            eventLoops.get(i).snapshot("eventLoops." + i + ".", snapshot);
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of an event loop, or of all the actor mailboxes of a group using {@link EventLoopGroup.Backend#ACTOR_MAILBOXES}.
+ * Latencies are recorded in nanoseconds.
+ */
+public class EventLoopMetrics {
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder run = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder idleNanos = new LongAdder();
+    private final Histogram queueLatency = new Histogram();
+    private final Histogram runLatency = new Histogram();
+
+    EventLoopMetrics() {}
+
+    void submitted() {
+        submitted.increment();
+    }
+
+    void run(long queueNanos, long runNanos) {
+        run.increment();
+        queueLatency.record(queueNanos);
+        runLatency.record(runNanos);
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    void dropped(long count) {
+        dropped.add(count);
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    void shed() {
+        shed.increment();
+    }
+
+    void busy(long nanos) {
+        busyNanos.add(nanos);
+    }
+
+    void idle(long nanos) {
+        idleNanos.add(nanos);
+    }
+
+    public long jobsSubmitted() {
+        return submitted.sum();
+    }
+
+    public long jobsRun() {
+        return run.sum();
+    }
+
+    public long jobsDropped() {
+        return dropped.sum();
+    }
+
+    public long jobsRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the number of jobs failed rather than run, as their deadline had passed by the time they were reached
+     */
+    public long jobsShed() {
+        return shed.sum();
+    }
+
+    public long queueDepth() {
+        return Math.max(0, submitted.sum() - run.sum() - dropped.sum() - shed.sum());
+    }
+
+    /**
+     * @return the time jobs spent in the mailbox, from submission until they started running
+     */
+    public Histogram queueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * @return the time jobs spent running
+     */
+    public Histogram runLatency() {
+        return runLatency;
+    }
+
+    /**
+     * @return the fraction of time spent running jobs, out of the time spent either running jobs or idling
+     */
+    public double busyRatio() {
+        long busy = busyNanos.sum(), idle = idleNanos.sum();
+        return busy + idle == 0 ? 0 : (double) busy / (busy + idle);
+    }
+
+    void snapshot(String prefix, Map<String, Number> snapshot) {
+        snapshot.put(prefix + "jobsSubmitted", jobsSubmitted());
+        snapshot.put(prefix + "jobsRun", jobsRun());
+        snapshot.put(prefix + "jobsDropped", jobsDropped());
+        snapshot.put(prefix + "jobsRejected", jobsRejected());
+        snapshot.put(prefix + "jobsShed", jobsShed());
+        snapshot.put(prefix + "queueDepth", queueDepth());
+        snapshot.put(prefix + "queueLatency.meanNanos", queueLatency.mean());
+        snapshot.put(prefix + "queueLatency.p99Nanos", queueLatency.percentile(0.99));
+        snapshot.put(prefix + "runLatency.meanNanos", runLatency.mean());
+        snapshot.put(prefix + "runLatency.p99Nanos", runLatency.percentile(0.99));
+        snapshot.put(prefix + "busyRatio", busyRatio());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The job queue of mailboxes bounded with {@link EventLoop.OverflowPolicy#DROP_OLDEST}, from which a producer can
+ * remove the oldest job counted against the capacity to make room for its own, so that a full mailbox stops growing
+ * however slowly its event loop takes jobs. {@link MPSCJobQueue} cannot unlink a job once it has been offered.
+ */
+final class EvictingJobQueue implements JobQueue {
+    private final ConcurrentLinkedQueue<Job> jobs = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void offer(Job job) {
+        jobs.offer(job);
+    }
+
+    @Override
+    public Job poll() {
+        return jobs.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return jobs.isEmpty();
+    }
+
+    /**
+     * Removes the oldest admitted job, unless the consumer takes it first, in which case the next one is tried.
+     *
+     * @return the removed job, or null if no admitted job is waiting
+     */
+    Job evictOldestAdmitted() {
+        for (Job job : jobs) {
+            if (job.admitted && jobs.remove(job)) return job;
+        }
+        return null;
+    }
+}
@@ -17,26 +17,110 @@
 
 package grakn.common.concurrent.actor.eventloop;
 
+import grakn.common.concurrent.NamedThreadFactory;
+
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 public class GlobalSystem {
-    private static Supplier<Long> getTime = () -> java.lang.System.currentTimeMillis();
-    private static Random random = ThreadLocalRandom.current();
+    private static final String ERROR_RESOLUTION_NOT_POSITIVE = "The resolution of the coarse clock must be positive, but was %d ms.";
+    private static final LongSupplier SYSTEM_CLOCK = java.lang.System::currentTimeMillis;
+    private static final LongSupplier COARSE_CLOCK = () -> GlobalSystem.coarseMillis;
+
+    private static LongSupplier clock = SYSTEM_CLOCK;
+
+    private static Random random; // null unless set, e.g. by a test
+    private static volatile long coarseMillis;
+    private static Thread ticker;
+    private static long tickerResolutionMs;
 
     private GlobalSystem() {}
 
     public static void set(Supplier<Long> getTime, Random random) {
-        GlobalSystem.getTime = getTime;
+        setClock(getTime::get);
+        GlobalSystem.random = random;
+    }
+
+    /**
+     * Replaces the clock returned by {@link #time()}, without boxing every reading as {@link #set(Supplier, Random)}
+     * does. This also stops the coarse clock, if it was running.
+     */
+    public static synchronized void setClock(LongSupplier clock) {
+        stopTicker();
+        GlobalSystem.clock = clock;
+    }
+
+    public static void setRandom(Random random) {
         GlobalSystem.random = random;
     }
 
+    /**
+     * Switches {@link #time()} to a clock which reads a field published by a background thread every
+     * {@code resolutionMs}, rather than the system clock. Deadlines may then be observed up to that much later.
+     */
+    public static synchronized void useCoarseClock(long resolutionMs) {
+        if (resolutionMs <= 0) {
+            throw new IllegalArgumentException(String.format(ERROR_RESOLUTION_NOT_POSITIVE, resolutionMs));
+        }
+        stopTicker();
+        coarseMillis = java.lang.System.currentTimeMillis();
+        ticker = NamedThreadFactory.create(GlobalSystem.class, "coarseClock").newThread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(resolutionMs);
+                    coarseMillis = java.lang.System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                // stopped by stopTicker()
+            }
+        });
+        ticker.setDaemon(true);
+        ticker.start();
+        tickerResolutionMs = resolutionMs;
+        clock = COARSE_CLOCK;
+    }
+
+    /**
+     * Switches {@link #time()} back to the system clock, stopping the coarse clock if it was running.
+     */
+    public static synchronized void useSystemClock() {
+        setClock(SYSTEM_CLOCK);
+    }
+
+    /**
+     * @return an action which restores the clock and the random in use now, e.g. once a {@link Simulation} is closed
+     */
+    static synchronized Runnable saved() {
+        LongSupplier savedClock = clock;
+        long savedResolutionMs = tickerResolutionMs;
+        Random savedRandom = random;
+        return () -> {
+            if (savedClock == COARSE_CLOCK) useCoarseClock(savedResolutionMs);
+            else setClock(savedClock);
+            random = savedRandom;
+        };
+    }
+
+    private static void stopTicker() {
+        if (ticker == null) return;
+        ticker.interrupt();
+        ticker = null;
+    }
+
     public static long time() {
-        return getTime.get();
+        return clock.getAsLong();
     }
 
+    /**
+     * @return the random set through {@link #set(Supplier, Random)} or {@link #setRandom(Random)}, if any. Otherwise
+     * the random of the event loop running the current thread, and otherwise {@link ThreadLocalRandom#current()}.
+     * Neither of the latter two may be shared with other threads.
+     */
     public static Random random() {
-        return random;
+        if (random != null) return random;
+        EventLoop eventLoop = EventLoop.current();
+        return eventLoop != null ? eventLoop.random() : ThreadLocalRandom.current();
     }
 }
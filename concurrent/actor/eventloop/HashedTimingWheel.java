@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+/**
+ * A hierarchical hashed timing wheel with a resolution of one millisecond. Each level has 64 slots, each slot
+ * spanning 64 times the duration of a slot on the level below, and each slot holds a doubly linked list of timers.
+ * A timer is placed on the lowest level whose current rotation still contains its expiry time, and is cascaded
+ * down into a finer level once time reaches the start of its slot. This gives O(1) {@link #offer(long, Object)},
+ * O(1) removal on {@link Entry#cancel()}, and an amortised O(1) {@link #poll(long)}.
+ *
+ * Like {@link LogicalTimerQueue}, this class is not thread safe, and logical time must not go backwards while
+ * timers are pending.
+ */
+public class HashedTimingWheel<V> implements TimerQueue<V> {
+    private static final String ERROR_TIMER_IS_QUEUED = "Only a timer which has been polled can be rescheduled.";
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 7; // 64^7 milliseconds, just over a century
+    private static final int RANGE_BITS = SLOT_BITS * LEVELS;
+    private static final int EXPIRED = LEVELS * SLOTS;
+    private static final int OVERFLOW = EXPIRED + 1;
+    private static final int DETACHED = -1;
+
+    private final Entry[] lists;
+    private final long[] occupied = new long[LEVELS];
+    private long currentMillis;
+    private int nextList;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashedTimingWheel(long currentMillis) {
+        this.currentMillis = currentMillis;
+        lists = (Entry[]) new HashedTimingWheel.Entry[OVERFLOW + 1];
+        for (int i = 0; i < lists.length; i++) {
+            Entry sentinel = new Entry(0, null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            lists[i] = sentinel;
+        }
+    }
+
+    public class Entry implements Timer {
+        private long expireAtMillis;
+        private final V value;
+        private Entry prev;
+        private Entry next;
+        private int list = DETACHED;
+        private boolean cancelled = false;
+
+        private Entry(long expireAtMillis, V value) {
+            this.expireAtMillis = expireAtMillis;
+            this.value = value;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (list != DETACHED) unlink(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void reschedule(long expireAtMillis) {
+            if (list != DETACHED) throw new IllegalStateException(ERROR_TIMER_IS_QUEUED);
+            this.expireAtMillis = expireAtMillis;
+            cancelled = false;
+            insert(this);
+        }
+    }
+
+    @Override
+    public Entry offer(long expireAtMillis, V value) {
+        Entry entry = new Entry(expireAtMillis, value);
+        insert(entry);
+        return entry;
+    }
+
+    @Override
+    public long timeToNext(long currentMillis) {
+        if (!isEmpty(EXPIRED)) return 0;
+        long next = nextEventMillis();
+        if (next == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return next - currentMillis;
+    }
+
+    @Override
+    public V poll(long currentMillis) {
+        advance(currentMillis);
+        Entry first = lists[EXPIRED].next;
+        if (first == lists[EXPIRED]) return null;
+        unlink(first);
+        return first.value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void advance(long targetMillis) {
+        if (size == 0) {
+            currentMillis = targetMillis;
+            return;
+        }
+        long next;
+        while ((next = nextEventMillis()) != Long.MAX_VALUE && next <= targetMillis) {
+            currentMillis = next;
+            Entry sentinel = lists[nextList];
+            Entry entry = sentinel.next;
+            sentinel.prev.next = null;
+            sentinel.next = sentinel;
+            sentinel.prev = sentinel;
+            if (nextList < EXPIRED) occupied[nextList / SLOTS] &= ~(1L << (nextList & SLOT_MASK));
+            while (entry != null) {
+                Entry following = entry.next;
+                size--;
+                insert(entry);
+                entry = following;
+            }
+        }
+        if (targetMillis > currentMillis) currentMillis = targetMillis;
+    }
+
+    /**
+     * Finds the earliest point in time at which a slot needs to be expired or cascaded, and records that slot.
+     */
+    private long nextEventMillis() {
+        for (int level = 0; level < LEVELS; level++) {
+            int index = (int) (currentMillis >> (SLOT_BITS * level)) & SLOT_MASK;
+            long later = occupied[level] & (-2L << index);
+            if (later != 0) {
+                int slot = Long.numberOfTrailingZeros(later);
+                int rotationBits = SLOT_BITS * (level + 1);
+                nextList = level * SLOTS + slot;
+                return ((currentMillis >> rotationBits) << rotationBits) | ((long) slot << (SLOT_BITS * level));
+            }
+        }
+        if (isEmpty(OVERFLOW)) return Long.MAX_VALUE;
+        nextList = OVERFLOW;
+        return ((currentMillis >> RANGE_BITS) + 1) << RANGE_BITS;
+    }
+
+    private void insert(Entry entry) {
+        if (entry.expireAtMillis <= currentMillis) {
+            // expired timers are usually few, so keep them in deadline order by searching back from the tail
+            Entry before = lists[EXPIRED].prev;
+            while (before != lists[EXPIRED] && before.expireAtMillis > entry.expireAtMillis) before = before.prev;
+            link(entry, EXPIRED, before);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int rotationBits = SLOT_BITS * (level + 1);
+            if ((entry.expireAtMillis >> rotationBits) == (currentMillis >> rotationBits)) {
+                int slot = (int) (entry.expireAtMillis >> (SLOT_BITS * level)) & SLOT_MASK;
+                occupied[level] |= 1L << slot;
+                link(entry, level * SLOTS + slot);
+                return;
+            }
+        }
+        link(entry, OVERFLOW);
+    }
+
+    private void link(Entry entry, int list) {
+        link(entry, list, lists[list].prev);
+    }
+
+    private void link(Entry entry, int list, Entry before) {
+        entry.prev = before;
+        entry.next = before.next;
+        before.next.prev = entry;
+        before.next = entry;
+        entry.list = list;
+        size++;
+    }
+
+    private void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        if (entry.list < EXPIRED && isEmpty(entry.list)) {
+            occupied[entry.list / SLOTS] &= ~(1L << (entry.list & SLOT_MASK));
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.list = DETACHED;
+        size--;
+    }
+
+    private boolean isEmpty(int list) {
+        return lists[list].next == lists[list];
+    }
+}
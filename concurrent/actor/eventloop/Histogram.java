@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size histogram of non-negative values, with one striped counter per power of two. Recording is wait free
+ * and never allocates; percentiles are reported as the upper bound of the bucket they fall into, so they are
+ * accurate to within a factor of two.
+ */
+public class Histogram {
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+    }
+
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) count += bucket.sum();
+        return count;
+    }
+
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+     */
+    public long percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket == 0) return 0;
+        if (bucket >= Long.SIZE - 1) return Long.MAX_VALUE;
+        return (1L << bucket) - 1;
+    }
+}
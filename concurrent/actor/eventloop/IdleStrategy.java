@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides what an event loop does while its mailbox is empty. Strategies other than {@link #blocking()} keep the
+ * event loop thread awake, which trades CPU time for lower latency when new jobs arrive, as producers then never
+ * have to wake the loop up.
+ */
+public abstract class IdleStrategy {
+
+    private IdleStrategy() {}
+
+    /**
+     * @param idleCount the number of times this has been called since the event loop last found work
+     */
+    abstract void idle(int idleCount, EventLoop eventLoop);
+
+    /**
+     * Parks the event loop thread until a producer submits a job. This is the default.
+     */
+    public static IdleStrategy blocking() {
+        return new IdleStrategy() {
+            @Override
+            void idle(int idleCount, EventLoop eventLoop) {
+                eventLoop.awaitJobs();
+            }
+        };
+    }
+
+    public static IdleStrategy busySpin() {
+        return new IdleStrategy() {
+            @Override
+            void idle(int idleCount, EventLoop eventLoop) {}
+        };
+    }
+
+    public static IdleStrategy spinThenYield(int spins) {
+        return new IdleStrategy() {
+            @Override
+            void idle(int idleCount, EventLoop eventLoop) {
+                if (idleCount >= spins) Thread.yield();
+            }
+        };
+    }
+
+    /**
+     * Spins, then yields, then parks for exponentially longer periods, starting at one microsecond, up to
+     * {@code maxParkMicros}. The loop is never woken up by producers, so {@code maxParkMicros} bounds the extra
+     * latency seen by a job that arrives while the loop is parked.
+     */
+    public static IdleStrategy backoff(int spins, int yields, long maxParkMicros) {
+        long maxParkNanos = TimeUnit.MICROSECONDS.toNanos(maxParkMicros);
+        return new IdleStrategy() {
+            @Override
+            void idle(int idleCount, EventLoop eventLoop) {
+                if (idleCount < spins) return;
+                if (idleCount < spins + yields) {
+                    Thread.yield();
+                } else {
+                    int doublings = Math.min(idleCount - spins - yields, 30);
+                    LockSupport.parkNanos(Math.min(maxParkNanos, 1000L << doublings));
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.function.Consumer;
+
+final class Job {
+    final Runnable runnable;
+    final Consumer<Exception> errorHandler;
+    volatile Job next; // intrusive link, owned by the JobQueue holding this job
+    long submittedNanos; // only set when metrics are enabled
+    long deadlineMs = Long.MAX_VALUE; // after which the job is failed rather than run
+    boolean admitted; // counted against the capacity of a bounded mailbox, so may be dropped to make room
+    boolean carried; // runs an event loop carried by the one running this job, so is run even when discarding
+
+    Job(Runnable runnable, Consumer<Exception> errorHandler) {
+        this.runnable = runnable;
+        this.errorHandler = errorHandler;
+    }
+
+    void run() {
+        try {
+            runnable.run();
+        } catch (Exception e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    void fail(Exception e) {
+        errorHandler.accept(e);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+/**
+ * A non-blocking queue of jobs, which may be offered to by any thread but is only ever polled by the thread of the
+ * event loop that owns it. Blocking is handled by the event loop itself.
+ */
+interface JobQueue {
+
+    void offer(Job job);
+
+    Job poll();
+
+    boolean isEmpty();
+
+    /**
+     * Moves up to {@code limit} jobs from the head of this queue into {@code buffer}, without blocking.
+     *
+     * @return the number of jobs moved
+     */
+    default int drain(Job[] buffer, int limit) {
+        int count = 0;
+        Job job;
+        while (count < limit && (job = poll()) != null) buffer[count++] = job;
+        return count;
+    }
+}
@@ -19,16 +19,19 @@ package grakn.common.concurrent.actor.eventloop;
 
 import java.util.PriorityQueue;
 
-public class LogicalTimerQueue<V> {
+public class LogicalTimerQueue<V> implements TimerQueue<V> {
+    private static final String ERROR_TIMER_IS_QUEUED = "Only a timer which has been polled can be rescheduled.";
+
     private final PriorityQueue<LogicalTimedItem> timerQueue = new PriorityQueue<>();
 
     private long queueCounter; // Used to break ties
 
-    public class LogicalTimedItem implements Comparable<LogicalTimedItem> {
-        private final long version;
+    public class LogicalTimedItem implements Comparable<LogicalTimedItem>, Timer {
+        private long version;
         private long expireAtMillis;
         private final V value;
         private boolean cancelled = false;
+        private boolean queued = false;
 
         public LogicalTimedItem(long expireAtMillis, V value) {
             this.expireAtMillis = expireAtMillis;
@@ -47,39 +50,63 @@ public class LogicalTimerQueue<V> {
             }
         }
 
+        @Override
         public void cancel() {
             cancelled = true;
         }
 
+        @Override
         public boolean isCancelled() {
             return cancelled;
         }
+
+        @Override
+        public void reschedule(long expireAtMillis) {
+            if (queued) throw new IllegalStateException(ERROR_TIMER_IS_QUEUED);
+            this.expireAtMillis = expireAtMillis;
+            version = queueCounter++;
+            cancelled = false;
+            add(this);
+        }
     }
 
+    @Override
     public LogicalTimedItem offer(long expireAtMillis, V value) {
         LogicalTimedItem item = new LogicalTimedItem(expireAtMillis, value);
-        timerQueue.add(item);
+        add(item);
         return item;
     }
 
+    private void add(LogicalTimedItem item) {
+        item.queued = true;
+        timerQueue.add(item);
+    }
+
+    @Override
     public long timeToNext(long currentMillis) {
         LogicalTimedItem timer = peekToNextReady();
         if (timer == null) return Long.MAX_VALUE;
         return timer.expireAtMillis - currentMillis;
     }
 
+    @Override
     public V poll(long currentMillis) {
         LogicalTimedItem timer = peekToNextReady();
         if (timer == null) return null;
         if (timer.expireAtMillis > currentMillis) return null;
-        timerQueue.poll();
+        timerQueue.poll().queued = false;
         return timer.value;
     }
 
+    @Override
+    public int size() {
+        return timerQueue.size();
+    }
+
     private LogicalTimedItem peekToNextReady() {
         LogicalTimedItem item;
         while ((item = timerQueue.peek()) != null && item.isCancelled()) {
-            timerQueue.poll();
+            timerQueue.poll().queued = false;
         }
         return item;
     }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An intrusive, unbounded, multi-producer single-consumer queue (after Dmitry Vyukov's non-intrusive MPSC node
+ * based queue). Jobs are linked through their own {@code next} field, so offering a job allocates nothing, and a
+ * producer only ever pays for a single atomic swap. A polled job is fully detached from the queue.
+ */
+final class MPSCJobQueue implements JobQueue {
+    private static final AtomicReferenceFieldUpdater<MPSCJobQueue, Job> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(MPSCJobQueue.class, Job.class, "tail");
+
+    private final Job stub = new Job(null, null);
+    private volatile Job tail; // written by producers
+    private Job head; // only touched by the consumer
+
+    MPSCJobQueue() {
+        tail = stub;
+        head = stub;
+    }
+
+    @Override
+    public void offer(Job job) {
+        job.next = null;
+        Job previous = TAIL.getAndSet(this, job);
+        previous.next = job;
+    }
+
+    @Override
+    public Job poll() {
+        Job first = head;
+        Job next = first.next;
+        if (first == stub) {
+            if (next == null) return null;
+            head = next;
+            first = next;
+            next = next.next;
+        }
+        if (next != null) {
+            head = next;
+            return first;
+        }
+        if (first != tail) return null; // a producer is half way through linking a job in, which it will signal
+        offer(stub);
+        next = first.next;
+        if (next != null) {
+            head = next;
+            return first;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Job first = head;
+        return first == stub && first.next == null;
+    }
+}
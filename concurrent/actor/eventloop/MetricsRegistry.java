@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the metrics of every running event loop group which has them enabled, and exposes each of them as a read
+ * only JMX MBean named {@code grakn.common.concurrent.actor:type=EventLoopGroup,name=<group name>}. Groups which share
+ * a name are registered as {@code <group name>#2}, {@code <group name>#3} and so on, in the order they were created.
+ */
+public class MetricsRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+    private static final String DOMAIN = "grakn.common.concurrent.actor";
+    private static final Map<String, EventLoopGroupMetrics> groups = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {}
+
+    public static Optional<EventLoopGroupMetrics> get(String name) {
+        return Optional.ofNullable(groups.get(name));
+    }
+
+    public static Set<String> names() {
+        return groups.keySet();
+    }
+
+    static void register(EventLoopGroupMetrics metrics) {
+        String groupName = metrics.name();
+        String name = groupName;
+        for (int i = 2; groups.putIfAbsent(name, metrics) != null; i++) name = groupName + "#" + i;
+        metrics.name(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(metrics), objectName(metrics.name()));
+        } catch (JMException e) {
+            LOG.warn("Could not register the metrics of event loop group '{}' with JMX.", metrics.name(), e);
+        }
+    }
+
+    static void unregister(EventLoopGroupMetrics metrics) {
+        if (!groups.remove(metrics.name(), metrics)) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(metrics.name()));
+        } catch (JMException e) {
+            LOG.debug("Could not unregister the metrics of event loop group '{}' from JMX.", metrics.name(), e);
+        }
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=EventLoopGroup,name=" + ObjectName.quote(name));
+    }
+
+    private static class MetricsMBean implements DynamicMBean {
+        private final EventLoopGroupMetrics metrics;
+
+        private MetricsMBean(EventLoopGroupMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = metrics.snapshot().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> snapshot = metrics.snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (snapshot.containsKey(attribute)) list.add(new Attribute(attribute, snapshot.get(attribute)));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Number> snapshot = metrics.snapshot();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+            int i = 0;
+            for (Map.Entry<String, Number> entry : snapshot.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(
+                        entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(), true, false, false
+                );
+            }
+            return new MBeanInfo(getClass().getName(), "Event loop group metrics", attributes, null, null, null);
+        }
+    }
+}
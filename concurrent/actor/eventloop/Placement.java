@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the event loop that a new actor is assigned to. Implementations must be thread safe, as actors may be
+ * created from any thread.
+ */
+public interface Placement {
+
+    EventLoop select(List<EventLoop> eventLoops);
+
+    static Placement roundRobin() {
+        AtomicInteger next = new AtomicInteger();
+        return eventLoops -> eventLoops.get(Math.floorMod(next.getAndIncrement(), eventLoops.size()));
+    }
+
+    /**
+     * Picks the event loop with the fewest jobs waiting. Each choice starts looking from the event loop after the
+     * previous choice's starting point, so that ties, such as between idle event loops, are broken round robin.
+     */
+    static Placement leastQueueDepth() {
+        AtomicInteger next = new AtomicInteger();
+        return eventLoops -> {
+            int size = eventLoops.size();
+            int start = Math.floorMod(next.getAndIncrement(), size);
+            EventLoop least = eventLoops.get(start);
+            long leastDepth = least.queueDepth();
+            for (int i = 1; i < size && leastDepth > 0; i++) {
+                EventLoop eventLoop = eventLoops.get((start + i) % size);
+                long depth = eventLoop.queueDepth();
+                if (depth < leastDepth) {
+                    least = eventLoop;
+                    leastDepth = depth;
+                }
+            }
+            return least;
+        };
+    }
+
+    /**
+     * Samples two distinct event loops at random and picks the less loaded one, which spreads load almost as well as
+     * {@link #leastQueueDepth()} while only looking at two queues.
+     */
+    static Placement powerOfTwoChoices() {
+        return eventLoops -> {
+            int size = eventLoops.size();
+            if (size == 1) return eventLoops.get(0);
+            Random random = GlobalSystem.random();
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first) second++;
+            EventLoop a = eventLoops.get(first), b = eventLoops.get(second);
+            return a.queueDepth() <= b.queueDepth() ? a : b;
+        };
+    }
+}
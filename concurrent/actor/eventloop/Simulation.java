@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs event loop groups deterministically on a single thread, against a virtual clock. Every event loop of a
+ * simulated group is carried by the thread calling {@link #runFor(long)} or {@link #runUntil(BooleanSupplier, long)},
+ * which runs jobs until all mailboxes are empty and then jumps the clock straight to the next timer deadline.
+ *
+ * Creating a simulation installs its clock and a random seeded with {@code seed} in {@link GlobalSystem}, so a run
+ * is replayed exactly by a simulation with the same seed, until the simulation is closed and the previous ones are
+ * restored. A simulation is not thread safe: actors may only be created and messaged from the thread running it.
+ */
+public class Simulation implements Executor, AutoCloseable {
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final TimerService timers;
+    private final Runnable restoreGlobalSystem;
+    private long currentMillis;
+
+    public Simulation(long startMillis, long seed) {
+        currentMillis = startMillis;
+        restoreGlobalSystem = GlobalSystem.saved();
+        timers = new TimerService(EventLoop.TimerType.HEAP, startMillis);
+        GlobalSystem.setClock(this::time);
+        GlobalSystem.setRandom(new Random(seed));
+    }
+
+    public EventLoopGroup group(int eventLoopCount, String prefix) {
+        return group(eventLoopCount, prefix, new EventLoopGroup.Options());
+    }
+
+    public EventLoopGroup group(int eventLoopCount, String prefix, EventLoopGroup.Options options) {
+        return new EventLoopGroup(eventLoopCount, prefix, options, this);
+    }
+
+    public long time() {
+        return currentMillis;
+    }
+
+    /**
+     * Runs every job that is ready, without advancing the clock.
+     */
+    public void runUntilIdle() {
+        Runnable task;
+        while ((task = tasks.pollFirst()) != null) task.run();
+    }
+
+    /**
+     * Runs the simulation until {@code durationMs} of virtual time have passed.
+     */
+    public void runFor(long durationMs) {
+        long endMillis = currentMillis + durationMs;
+        do {
+            runUntilIdle();
+        } while (advance(endMillis));
+        currentMillis = endMillis;
+    }
+
+    /**
+     * Runs the simulation until {@code condition} holds once all ready jobs have run, at most {@code timeoutMs} of
+     * virtual time have passed, or there is nothing left to run.
+     *
+     * @return whether the condition was met
+     */
+    public boolean runUntil(BooleanSupplier condition, long timeoutMs) {
+        long endMillis = currentMillis + timeoutMs;
+        runUntilIdle();
+        while (!condition.getAsBoolean()) {
+            if (!advance(endMillis)) return false;
+            runUntilIdle();
+        }
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.addLast(task);
+    }
+
+    /**
+     * Restores the clock and the random that {@link GlobalSystem} used before this simulation was created.
+     */
+    @Override
+    public void close() {
+        restoreGlobalSystem.run();
+    }
+
+    TimerService timers() {
+        return timers;
+    }
+
+    /**
+     * Moves the clock forward to the next point at which timers may expire, if that is no later than
+     * {@code endMillis}, and expires them.
+     */
+    private boolean advance(long endMillis) {
+        long timeToNext = timers.timeToNext(currentMillis);
+        if (timeToNext == Long.MAX_VALUE || currentMillis + timeToNext > endMillis) return false;
+        currentMillis += Math.max(0, timeToNext);
+        timers.expire(currentMillis);
+        return true;
+    }
+}
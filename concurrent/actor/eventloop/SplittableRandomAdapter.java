@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * A {@link Random} drawing from a {@link SplittableRandom}, so that, unlike {@code Random} itself, it needs no atomic
+ * update of its seed. Like {@code SplittableRandom}, it must only be used by one thread at a time.
+ */
+final class SplittableRandomAdapter extends Random {
+    private static final long serialVersionUID = 1L;
+    private final SplittableRandom source;
+
+    SplittableRandomAdapter(SplittableRandom source) {
+        super(0L); // as Random() would update a seed shared by every Random created without one
+        this.source = source;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        if (source != null) throw new UnsupportedOperationException(); // as for ThreadLocalRandom
+    }
+
+    @Override
+    protected int next(int bits) {
+        return source.nextInt() >>> (32 - bits);
+    }
+
+    @Override
+    public int nextInt() {
+        return source.nextInt();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return source.nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return source.nextLong();
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return source.nextBoolean();
+    }
+
+    @Override
+    public double nextDouble() {
+        return source.nextDouble();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import grakn.common.concurrent.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static grakn.common.util.Objects.className;
+
+/**
+ * Watches the threads running the event loops of a group, and reports every job which runs for longer than a
+ * threshold, with the stack of its thread at the time. The threads are sampled twice per threshold, so a stall is
+ * reported between one and one and a half thresholds after the job started.
+ */
+final class StallWatchdog {
+    private static final Logger LOG = LoggerFactory.getLogger(StallWatchdog.class);
+    private static final String STALLED = "Event loop thread '{}' has been running a job of {} for {} ms";
+    private static final long MIN_SAMPLE_INTERVAL_MS = 10;
+
+    private final long thresholdNanos;
+    private final long sampleIntervalMs;
+    private final EventLoopGroupMetrics metrics;
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Watch> watch = ThreadLocal.withInitial(Watch::new);
+    private final Thread thread;
+
+    StallWatchdog(long thresholdMs, @Nullable EventLoopGroupMetrics metrics) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.sampleIntervalMs = Math.max(MIN_SAMPLE_INTERVAL_MS, thresholdMs / 2);
+        this.metrics = metrics;
+        thread = NamedThreadFactory.create(StallWatchdog.class, "sampler").newThread(this::sample);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the watch of the current thread, which is watched until {@link #release()}
+     */
+    Watch watch() {
+        Watch current = watch.get();
+        if (current.holds++ == 0) watches.add(current);
+        return current;
+    }
+
+    /**
+     * Stops watching the current thread once every event loop which took its watch has released it, e.g. when a
+     * carried event loop returns the thread to its pool.
+     */
+    void release() {
+        Watch current = watch.get();
+        if (--current.holds == 0) {
+            watches.remove(current);
+            watch.remove();
+        }
+    }
+
+    void stop() {
+        thread.interrupt();
+    }
+
+    private void sample() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(sampleIntervalMs);
+                long now = System.nanoTime();
+                for (Watch watch : watches) {
+                    long startNanos = watch.startNanos;
+                    if (startNanos != 0 && now - startNanos >= thresholdNanos && startNanos != watch.reportedNanos) {
+                        watch.reportedNanos = startNanos;
+                        try {
+                            report(watch, now - startNanos);
+                        } catch (RuntimeException e) {
+                            LOG.error("Failed to report a stalled event loop thread.", e); // but keep sampling
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped by stop()
+        }
+    }
+
+    private void report(Watch watch, long stalledNanos) {
+        if (metrics != null) metrics.recordStall();
+        Object owner = watch.owner;
+        Stall stall = new Stall();
+        stall.setStackTrace(watch.thread.getStackTrace());
+        LOG.warn(STALLED, watch.thread.getName(), owner != null ? ownerName(owner.getClass()) : "an unknown owner",
+                 TimeUnit.NANOSECONDS.toMillis(stalledNanos), stall);
+    }
+
+    /**
+     * @return the name of the class of an owner, which for anonymous and local classes, having no canonical name, is
+     * their binary name, e.g. {@code grakn.Outer$1}
+     */
+    private static String ownerName(Class<?> ownerClass) {
+        return ownerClass.getCanonicalName() != null ? className(ownerClass) : ownerClass.getName();
+    }
+
+    /**
+     * The job running on a thread, if any. Only the thread itself writes to it, and nested event loops, such as the
+     * actor mailboxes of {@link EventLoopGroup.Backend#FAIR_EVENT_LOOPS}, share the watch of the thread carrying them.
+     */
+    static final class Watch {
+        private final Thread thread = Thread.currentThread();
+        private int holds; // event loops on this thread which took this watch
+        private long reportedNanos; // only accessed by the sampler
+        volatile long startNanos; // 0 when no job is running
+        volatile Object owner;
+
+        void started(long startNanos) {
+            owner = null;
+            this.startNanos = startNanos;
+        }
+
+        void finished() {
+            startNanos = 0;
+        }
+    }
+
+    /**
+     * Carries the stack of a stalled thread into the log.
+     */
+    private static final class Stall extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+/**
+ * A single threaded queue of values which become available once the logical time passed to {@link #poll(long)}
+ * reaches their expiry time.
+ */
+public interface TimerQueue<V> {
+
+    Timer offer(long expireAtMillis, V value);
+
+    /**
+     * @return a lower bound on the time until the next value becomes available, or {@code Long.MAX_VALUE} if the
+     * queue is empty. Waking up early is allowed, as {@link #poll(long)} simply returns null.
+     */
+    long timeToNext(long currentMillis);
+
+    V poll(long currentMillis);
+
+    int size();
+
+    interface Timer {
+
+        void cancel();
+
+        boolean isCancelled();
+
+        /**
+         * Re-arms a timer which has been returned by {@link #poll(long)}, so that recurring timers can reuse it.
+         */
+        void reschedule(long expireAtMillis);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A single timer thread which tracks the deadlines of scheduled jobs for a whole group of event loops, and submits
+ * each job to the mailbox of its event loop once it expires. Scheduling and cancelling are submitted to the timer
+ * thread through its own mailbox, so the timer queue itself is only ever touched by the timer thread.
+ *
+ * A {@link Simulation} instead uses a timer service without a thread, which applies commands immediately and is
+ * advanced explicitly, all on the thread running the simulation.
+ */
+class TimerService {
+    private static final Logger LOG = LoggerFactory.getLogger(TimerService.class);
+
+    private final JobQueue commands = new MPSCJobQueue();
+    private final TimerQueue<EventLoop.ScheduledJob> timers;
+    private final Thread thread;
+    private final Consumer<Exception> errorHandler = e -> { LOG.error("An unexpected error has occurred.", e); };
+    private volatile boolean parked;
+    private volatile boolean running;
+    private volatile int backlog;
+
+    TimerService(ThreadFactory factory, EventLoop.TimerType timerType) {
+        timers = timerType == EventLoop.TimerType.HEAP
+                ? new LogicalTimerQueue<>() : new HashedTimingWheel<>(GlobalSystem.time());
+        thread = factory.newThread(this::loop);
+        running = true;
+        thread.start();
+    }
+
+    TimerService(EventLoop.TimerType timerType, long currentMillis) {
+        timers = timerType == EventLoop.TimerType.HEAP
+                ? new LogicalTimerQueue<>() : new HashedTimingWheel<>(currentMillis);
+        thread = null;
+    }
+
+    void schedule(EventLoop.ScheduledJob job) {
+        submit(() -> {
+            if (!job.isCancelled()) job.timer = timers.offer(job.deadlineMs, job);
+        });
+    }
+
+    /**
+     * Re-arms the timer of a recurring job at its new deadline, once its event loop has run it.
+     */
+    void reschedule(EventLoop.ScheduledJob job) {
+        submit(() -> {
+            if (!job.isCancelled()) job.timer.reschedule(job.deadlineMs);
+        });
+    }
+
+    void cancel(EventLoop.ScheduledJob job) {
+        submit(() -> {
+            if (job.timer != null) job.timer.cancel();
+        });
+    }
+
+    int backlog() {
+        return backlog;
+    }
+
+    /**
+     * @return the number of scheduled jobs left pending, which neither expired nor were cancelled before the stop
+     */
+    int stop() throws InterruptedException {
+        if (thread == null) return 0; // a simulation's timers are shared by all its groups, and are never stopped
+        submit(() -> running = false);
+        thread.join();
+        int pending = 0;
+        EventLoop.ScheduledJob job;
+        // the timer queues skip or unlink cancelled timers, but not jobs whose cancellation was still in the mailbox
+        while ((job = timers.poll(Long.MAX_VALUE)) != null) {
+            if (!job.isCancelled()) pending++;
+        }
+        return pending;
+    }
+
+    long timeToNext(long currentMillis) {
+        return timers.timeToNext(currentMillis);
+    }
+
+    void expire(long currentMillis) {
+        EventLoop.ScheduledJob expired;
+        while ((expired = timers.poll(currentMillis)) != null) expired.expire(currentMillis);
+        backlog = timers.size();
+    }
+
+    private void submit(Runnable command) {
+        if (thread == null) {
+            new Job(command, errorHandler).run();
+            return;
+        }
+        commands.offer(new Job(command, errorHandler));
+        if (parked) LockSupport.unpark(thread);
+    }
+
+    private void loop() {
+        LOG.debug("Started");
+        while (running) {
+            Job command;
+            while ((command = commands.poll()) != null) command.run();
+            if (!running) break;
+
+            long currentTime = GlobalSystem.time();
+            expire(currentTime);
+            await(timers.timeToNext(currentTime));
+        }
+        LOG.debug("stopped");
+    }
+
+    private void await(long timeoutMs) {
+        if (timeoutMs <= 0) return;
+        parked = true; // see EventLoop.awaitJobs()
+        if (commands.isEmpty()) {
+            if (timeoutMs == Long.MAX_VALUE) LockSupport.park(this);
+            else LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+        }
+        parked = false;
+        if (Thread.interrupted()) throw new RuntimeException(new InterruptedException());
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package grakn.common.concurrent.actor.eventloop;
+
+import java.util.concurrent.LinkedTransferQueue;
+
+/**
+ * The original {@link LinkedTransferQueue} backed job queue, kept so that it can be compared against
+ * {@link MPSCJobQueue}.
+ */
+final class TransferJobQueue implements JobQueue {
+    private final LinkedTransferQueue<Job> jobs = new LinkedTransferQueue<>();
+
+    @Override
+    public void offer(Job job) {
+        jobs.offer(job);
+    }
+
+    @Override
+    public Job poll() {
+        return jobs.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return jobs.isEmpty();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class EventLoopGroupTest {
+
+    @Test(timeout = 10_000)
+    public void event_loops_are_assigned_while_another_thread_awaits_the_group() throws InterruptedException {
+        for (EventLoopGroup.Backend backend : EventLoopGroup.Backend.values()) {
+            EventLoopGroup group = new EventLoopGroup(2, "group", new EventLoopGroup.Options().backend(backend));
+            Thread awaiter = awaiting(group);
+            EventLoop eventLoop = group.assignEventLoop();
+            CountDownLatch ran = new CountDownLatch(1);
+            eventLoop.submit(ran::countDown, e -> {});
+            ran.await();
+            awaiter.interrupt();
+            awaiter.join();
+            group.stop();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void blocking_tasks_are_executed_while_another_thread_awaits_the_group() throws InterruptedException {
+        EventLoopGroup group = new EventLoopGroup(1, "group");
+        Thread awaiter = awaiting(group);
+        CountDownLatch ran = new CountDownLatch(1);
+        group.assignEventLoop().submit(() -> group.executeBlocking(ran::countDown), e -> {});
+        ran.await();
+        awaiter.interrupt();
+        awaiter.join();
+        group.stop();
+    }
+
+    @Test
+    public void seeded_groups_give_their_event_loops_the_same_distinct_streams() throws Exception {
+        List<Long> first = randoms(42);
+        assertEquals(first, randoms(42));
+        assertNotEquals(first, randoms(43));
+        assertNotEquals(first.get(0), first.get(1));
+    }
+
+    /**
+     * @return the first random number drawn by each of the event loops of a seeded group
+     */
+    private static List<Long> randoms(long seed) throws Exception {
+        EventLoopGroup group = new EventLoopGroup(2, "group", new EventLoopGroup.Options().seed(seed));
+        List<Long> randoms = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            EventLoop eventLoop = group.assignEventLoop();
+            CompletableFuture<Long> random = new CompletableFuture<>();
+            eventLoop.submit(() -> random.complete(eventLoop.random().nextLong()), random::completeExceptionally);
+            randoms.add(random.get());
+        }
+        group.stop();
+        return randoms;
+    }
+
+    /**
+     * @return a thread which is waiting in {@link EventLoopGroup#await()}, until it is interrupted
+     */
+    static Thread awaiting(EventLoopGroup group) throws InterruptedException {
+        Thread awaiter = new Thread(() -> {
+            try {
+                group.await();
+            } catch (InterruptedException e) {
+                // stopped waiting
+            }
+        });
+        awaiter.start();
+        while (awaiter.getState() != Thread.State.WAITING && awaiter.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        return awaiter;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+
+public class FairEventLoopsTest {
+    private static final int THROUGHPUT = 4;
+    private static final int MAILBOXES = 4;
+    private static final int JOBS_PER_MAILBOX = 500;
+
+    @Test(timeout = 5_000)
+    public void mailboxes_sharing_an_event_loop_take_turns_of_at_most_the_throughput() throws InterruptedException {
+        EventLoopGroup group = new EventLoopGroup(1, "fair", new EventLoopGroup.Options()
+                .backend(EventLoopGroup.Backend.FAIR_EVENT_LOOPS).throughput(THROUGHPUT));
+        EventLoop blocker = group.assignEventLoop();
+        EventLoop first = group.assignEventLoop();
+        EventLoop second = group.assignEventLoop();
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        blocker.submit(() -> {
+            blocked.countDown();
+            await(gate);
+        }, e -> {});
+        blocked.await();
+
+        List<String> ran = new CopyOnWriteArrayList<>();
+        int jobs = THROUGHPUT * 3;
+        for (int i = 0; i < jobs; i++) {
+            int job = i;
+            first.submit(() -> ran.add("first " + job), e -> {});
+            second.submit(() -> ran.add("second " + job), e -> {});
+        }
+        gate.countDown();
+        while (ran.size() < jobs * 2) Thread.sleep(1); // as the mailboxes run their jobs in one go once stopping
+        group.stop();
+
+        List<String> expected = new ArrayList<>();
+        for (int turn = 0; turn < jobs / THROUGHPUT; turn++) {
+            for (int i = turn * THROUGHPUT; i < (turn + 1) * THROUGHPUT; i++) expected.add("first " + i);
+            for (int i = turn * THROUGHPUT; i < (turn + 1) * THROUGHPUT; i++) expected.add("second " + i);
+        }
+        assertEquals(expected, ran);
+    }
+
+    @Test(timeout = 60_000)
+    public void mailboxes_racing_the_stop_of_their_event_loop_lose_no_jobs() throws InterruptedException {
+        for (int round = 0; round < 100; round++) {
+            EventLoopGroup group = new EventLoopGroup(1, "fair", new EventLoopGroup.Options()
+                    .backend(EventLoopGroup.Backend.FAIR_EVENT_LOOPS).throughput(1));
+            AtomicInteger ran = new AtomicInteger();
+            AtomicInteger discarded = new AtomicInteger();
+            AtomicInteger failedOtherwise = new AtomicInteger();
+            Runnable job = ran::incrementAndGet;
+            Consumer<Exception> onError = e -> {
+                if (e instanceof RejectedExecutionException) discarded.incrementAndGet();
+                else failedOtherwise.incrementAndGet();
+            };
+            EventLoop[] mailboxes = new EventLoop[MAILBOXES];
+            Thread[] producers = new Thread[MAILBOXES];
+            for (int i = 0; i < MAILBOXES; i++) {
+                EventLoop mailbox = group.assignEventLoop();
+                mailboxes[i] = mailbox;
+                producers[i] = new Thread(() -> {
+                    for (int j = 0; j < JOBS_PER_MAILBOX; j++) mailbox.submit(job, onError);
+                });
+                producers[i].start();
+            }
+            group.shutdown(EventLoopGroup.ShutdownPolicy.DRAIN, 5_000);
+            for (Thread producer : producers) producer.join();
+            // a mailbox stranded behind the stop of its event loop would never take these
+            for (EventLoop mailbox : mailboxes) mailbox.submit(job, onError);
+
+            assertEquals(0, failedOtherwise.get());
+            assertEquals("round " + round, MAILBOXES * (JOBS_PER_MAILBOX + 1), ran.get() + discarded.get());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
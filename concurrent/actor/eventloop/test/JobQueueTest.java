@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(Parameterized.class)
+public class JobQueueTest {
+    private static final int PRODUCERS = 4;
+    private static final int JOBS_PER_PRODUCER = 100_000;
+
+    private final Supplier<JobQueue> queueConstructor;
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> queues() {
+        return Arrays.asList(new Object[][] {
+                {EventLoop.QueueType.MPSC, (Supplier<JobQueue>) MPSCJobQueue::new},
+                {EventLoop.QueueType.LINKED_TRANSFER, (Supplier<JobQueue>) TransferJobQueue::new},
+        });
+    }
+
+    public JobQueueTest(EventLoop.QueueType queueType, Supplier<JobQueue> queueConstructor) {
+        this.queueConstructor = queueConstructor;
+    }
+
+    @Test
+    public void single_thread_is_fifo() {
+        JobQueue queue = queueConstructor.get();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        Job[] jobs = new Job[5];
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i] = job(0, i);
+            queue.offer(jobs[i]);
+        }
+        Job[] buffer = new Job[3];
+        assertEquals(3, queue.drain(buffer, 3));
+        for (int i = 0; i < 3; i++) assertSame(jobs[i], buffer[i]);
+        assertSame(jobs[3], queue.poll());
+        assertSame(jobs[4], queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 60_000)
+    public void contended_producers_lose_nothing_and_keep_their_order() throws InterruptedException {
+        JobQueue queue = queueConstructor.get();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                for (int i = 0; i < JOBS_PER_PRODUCER; i++) queue.offer(job(producer, i));
+            });
+            producers[p].start();
+        }
+
+        int[] next = new int[PRODUCERS];
+        Job[] batch = new Job[16];
+        int received = 0;
+        start.countDown();
+        while (received < PRODUCERS * JOBS_PER_PRODUCER) {
+            int count = queue.drain(batch, batch.length);
+            for (int i = 0; i < count; i++) {
+                Tag tag = (Tag) batch[i].runnable;
+                assertEquals("producer " + tag.producer + " out of order", next[tag.producer], tag.sequence);
+                next[tag.producer]++;
+            }
+            received += count;
+            if (count == 0) Thread.yield();
+        }
+        for (Thread producer : producers) producer.join();
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        for (int p = 0; p < PRODUCERS; p++) assertEquals(JOBS_PER_PRODUCER, next[p]);
+    }
+
+    private static Job job(int producer, int sequence) {
+        return new Job(new Tag(producer, sequence), e -> {});
+    }
+
+    private static class Tag implements Runnable {
+        private final int producer;
+        private final int sequence;
+
+        private Tag(int producer, int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {}
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OverflowPolicyTest {
+    private static final int CAPACITY = 4;
+    private static final long TIMEOUT_MS = 5_000;
+
+    private final List<Integer> ran = new CopyOnWriteArrayList<>();
+    private final List<Integer> failed = new CopyOnWriteArrayList<>();
+    private CountDownLatch gate = new CountDownLatch(1);
+    private EventLoopGroup group;
+
+    @After
+    public void stop() throws InterruptedException {
+        gate.countDown();
+        if (group != null) group.stop();
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void reject_refuses_jobs_beyond_capacity() throws InterruptedException {
+        EventLoop eventLoop = blockedEventLoop(EventLoop.OverflowPolicy.REJECT);
+        for (int i = 0; i < CAPACITY; i++) submit(eventLoop, i);
+        try {
+            submit(eventLoop, CAPACITY);
+            fail("The job beyond the capacity was not refused");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        awaitAll(CAPACITY);
+        assertEquals(asList(0, 1, 2, 3), ran);
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void drop_oldest_fails_as_many_waiting_jobs_as_overflowed() throws InterruptedException {
+        EventLoop eventLoop = blockedEventLoop(EventLoop.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < CAPACITY + 2; i++) submit(eventLoop, i);
+        awaitAll(CAPACITY + 2);
+        assertEquals(asList(0, 1), failed);
+        assertEquals(asList(2, 3, 4, 5), ran);
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void drop_oldest_never_holds_more_than_the_capacity_while_the_event_loop_is_stalled()
+            throws InterruptedException {
+        EventLoop eventLoop = blockedEventLoop(EventLoop.OverflowPolicy.DROP_OLDEST);
+        int jobs = 10_000;
+        for (int i = 0; i < jobs; i++) submit(eventLoop, i);
+        assertEquals(CAPACITY, eventLoop.queueDepth());
+        assertEquals(jobs - CAPACITY, failed.size());
+        awaitAll(jobs);
+        assertEquals(asList(jobs - 4, jobs - 3, jobs - 2, jobs - 1), ran);
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void drop_oldest_never_drops_jobs_which_are_never_refused() throws InterruptedException {
+        EventLoop eventLoop = blockedEventLoop(EventLoop.OverflowPolicy.DROP_OLDEST);
+        eventLoop.reply(() -> ran.add(-1), e -> failed.add(-1));
+        for (int i = 0; i < CAPACITY + 1; i++) submit(eventLoop, i);
+        awaitAll(CAPACITY + 2);
+        assertEquals(asList(0), failed);
+        assertEquals(asList(-1, 1, 2, 3, 4), ran);
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void block_waits_for_room_in_the_mailbox() throws InterruptedException {
+        EventLoop eventLoop = blockedEventLoop(EventLoop.OverflowPolicy.BLOCK);
+        for (int i = 0; i < CAPACITY; i++) submit(eventLoop, i);
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            submit(eventLoop, CAPACITY);
+            submitted.countDown();
+        });
+        producer.start();
+        assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+        gate.countDown();
+        submitted.await();
+        awaitAll(CAPACITY + 1);
+        assertEquals(asList(0, 1, 2, 3, 4), ran);
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void block_refuses_rather_than_blocks_callers_on_an_event_loop() throws Exception {
+        for (EventLoopGroup.Backend backend : EventLoopGroup.Backend.values()) {
+            ran.clear();
+            group = new EventLoopGroup(2, "overflow", new EventLoopGroup.Options()
+                    .backend(backend).mailboxCapacity(CAPACITY, EventLoop.OverflowPolicy.BLOCK));
+            EventLoop receiver = group.assignEventLoop();
+            EventLoop sender = group.assignEventLoop();
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch blocked = new CountDownLatch(1);
+            receiver.submit(() -> {
+                blocked.countDown();
+                await(gate);
+            }, e -> {});
+            blocked.await();
+            CompletableFuture<Exception> refusal = new CompletableFuture<>();
+            sender.submit(() -> {
+                for (int i = 0; i < CAPACITY; i++) submit(receiver, i);
+                try {
+                    submit(receiver, CAPACITY);
+                    refusal.complete(null);
+                } catch (RejectedExecutionException e) {
+                    refusal.complete(e);
+                }
+            }, e -> {});
+            assertTrue(backend.toString(), refusal.get() instanceof RejectedExecutionException);
+            gate.countDown();
+            while (ran.size() < CAPACITY) Thread.sleep(1);
+            assertEquals(backend.toString(), asList(0, 1, 2, 3), ran);
+            group.stop();
+            group = null;
+        }
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void try_submit_refuses_jobs_beyond_capacity_under_every_policy() throws InterruptedException {
+        for (EventLoop.OverflowPolicy policy : EventLoop.OverflowPolicy.values()) {
+            EventLoop eventLoop = blockedEventLoop(policy);
+            AtomicInteger accepted = new AtomicInteger();
+            for (int i = 0; i < CAPACITY + 2; i++) {
+                if (eventLoop.trySubmit(() -> {}, e -> {})) accepted.incrementAndGet();
+            }
+            assertEquals(policy.toString(), CAPACITY, accepted.get());
+            gate.countDown();
+            group.stop();
+            group = null;
+        }
+    }
+
+    /**
+     * @return the event loop of a new group, which is running a job that waits for the gate
+     */
+    private EventLoop blockedEventLoop(EventLoop.OverflowPolicy policy) throws InterruptedException {
+        group = new EventLoopGroup(1, "overflow", new EventLoopGroup.Options().mailboxCapacity(CAPACITY, policy));
+        EventLoop eventLoop = group.assignEventLoop();
+        CountDownLatch gate = new CountDownLatch(1);
+        this.gate = gate;
+        CountDownLatch blocked = new CountDownLatch(1);
+        eventLoop.submit(() -> {
+            blocked.countDown();
+            await(gate);
+        }, e -> {});
+        blocked.await();
+        return eventLoop;
+    }
+
+    private void submit(EventLoop eventLoop, int job) {
+        eventLoop.submit(() -> ran.add(job), e -> failed.add(job));
+    }
+
+    private void awaitAll(int jobs) throws InterruptedException {
+        gate.countDown();
+        while (ran.size() + failed.size() < jobs) Thread.sleep(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
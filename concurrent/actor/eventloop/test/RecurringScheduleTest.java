@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecurringScheduleTest {
+
+    @Test
+    public void fixed_rate_jobs_run_on_their_deadlines() {
+        List<Long> times = new ArrayList<>();
+        try (Simulation simulation = new Simulation(0, 0)) {
+            EventLoop eventLoop = simulation.group(1, "recurring").assignEventLoop();
+            eventLoop.submitAtFixedRate(5, 10, () -> times.add(GlobalSystem.time()), e -> {});
+            simulation.runFor(50);
+        }
+        assertEquals(asList(5L, 15L, 25L, 35L, 45L), times);
+    }
+
+    @Test
+    public void cancelled_recurring_jobs_stop_running() {
+        AtomicInteger runs = new AtomicInteger();
+        try (Simulation simulation = new Simulation(0, 0)) {
+            EventLoop eventLoop = simulation.group(1, "recurring").assignEventLoop();
+            EventLoop.ScheduledJob[] job = new EventLoop.ScheduledJob[1];
+            job[0] = eventLoop.submitWithFixedDelay(0, 10, () -> {
+                if (runs.incrementAndGet() == 3) job[0].cancel();
+            }, e -> {});
+            simulation.runFor(1_000);
+        }
+        assertEquals(3, runs.get());
+    }
+
+    @Test(timeout = 5_000)
+    public void fixed_delay_jobs_wait_the_delay_after_each_run_finishes() throws InterruptedException {
+        EventLoopGroup group = new EventLoopGroup(1, "recurring");
+        List<Long> starts = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        EventLoop.ScheduledJob job = group.assignEventLoop().submitWithFixedDelay(GlobalSystem.time(), 20, () -> {
+            starts.add(System.nanoTime());
+            sleep(30);
+            done.countDown();
+        }, e -> {});
+        done.await();
+        job.cancel();
+        group.stop();
+        for (int i = 1; i < 4; i++) {
+            long gapMs = TimeUnit.NANOSECONDS.toMillis(starts.get(i) - starts.get(i - 1));
+            assertTrue("runs started " + gapMs + " ms apart", gapMs >= 48); // 30 ms running, 20 ms waiting, to the ms
+        }
+    }
+
+    @Test(timeout = 5_000)
+    public void fixed_rate_jobs_skip_the_deadlines_missed_while_a_run_waits() throws InterruptedException {
+        EventLoopGroup group = new EventLoopGroup(1, "recurring");
+        EventLoop eventLoop = group.assignEventLoop();
+        CountDownLatch busy = new CountDownLatch(1);
+        eventLoop.submit(() -> {
+            sleep(600);
+            busy.countDown();
+        }, e -> {});
+        AtomicInteger runs = new AtomicInteger();
+        EventLoop.ScheduledJob job = eventLoop.submitAtFixedRate(GlobalSystem.time(), 50, runs::incrementAndGet,
+                                                                 e -> {});
+        busy.await();
+        sleep(10);
+        job.cancel();
+        group.stop();
+        assertTrue("ran " + runs.get() + " times", runs.get() <= 2);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(Parameterized.class)
+public class ShutdownTest {
+    private static final int MAILBOXES = 8;
+    private static final int JOBS_PER_MAILBOX = 50;
+
+    private final EventLoopGroup.Backend backend;
+    private final EventLoopGroup.ShutdownPolicy policy;
+    private final AtomicInteger ran = new AtomicInteger();
+    private final AtomicInteger discarded = new AtomicInteger();
+    private final AtomicInteger failedOtherwise = new AtomicInteger();
+
+    @Parameters(name = "{0} {1}")
+    public static Collection<Object[]> combinations() {
+        List<Object[]> combinations = new ArrayList<>();
+        for (EventLoopGroup.Backend backend : EventLoopGroup.Backend.values()) {
+            for (EventLoopGroup.ShutdownPolicy policy : EventLoopGroup.ShutdownPolicy.values()) {
+                combinations.add(new Object[] {backend, policy});
+            }
+        }
+        return combinations;
+    }
+
+    public ShutdownTest(EventLoopGroup.Backend backend, EventLoopGroup.ShutdownPolicy policy) {
+        this.backend = backend;
+        this.policy = policy;
+    }
+
+    @Test(timeout = 10_000)
+    public void every_job_is_either_run_or_discarded() throws InterruptedException {
+        EventLoopGroup group = new EventLoopGroup(2, "shutdown", new EventLoopGroup.Options().backend(backend));
+        CountDownLatch gate = new CountDownLatch(1);
+        for (int i = 0; i < MAILBOXES; i++) {
+            EventLoop eventLoop = group.assignEventLoop();
+            submit(eventLoop, () -> await(gate));
+            for (int j = 0; j < JOBS_PER_MAILBOX; j++) submit(eventLoop, () -> {});
+        }
+        Thread opener = new Thread(() -> {
+            sleep(50);
+            gate.countDown();
+        });
+        opener.start();
+
+        EventLoopGroup.ShutdownReport report = group.shutdown(policy, 5_000);
+        opener.join();
+
+        int jobs = MAILBOXES * (JOBS_PER_MAILBOX + 1);
+        assertTrue(report.completed());
+        assertEquals(0, failedOtherwise.get());
+        assertEquals(jobs, ran.get() + discarded.get());
+        assertEquals(discarded.get(), report.jobsDiscarded());
+        if (policy == EventLoopGroup.ShutdownPolicy.DRAIN) assertEquals(jobs, ran.get());
+        else assertTrue(discarded.get() > 0);
+    }
+
+    @Test(timeout = 10_000)
+    public void jobs_submitted_after_their_event_loop_stopped_are_run_or_discarded() throws Exception {
+        EventLoopGroup group = new EventLoopGroup(2, "shutdown", new EventLoopGroup.Options().backend(backend));
+        EventLoop sender = group.assignEventLoop();
+        EventLoop receiver = group.assignEventLoop();
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch sending = new CountDownLatch(1);
+        submit(sender, () -> {
+            sending.countDown();
+            await(gate); // while the receiver stops
+            submit(receiver, () -> {});
+        });
+        sending.await(); // or a discarding shutdown could discard the sender's job before it sends anything
+        CompletableFuture<EventLoopGroup.ShutdownReport> report = new CompletableFuture<>();
+        Thread shutdown = new Thread(() -> {
+            try {
+                report.complete(group.shutdown(policy, 5_000));
+            } catch (InterruptedException e) {
+                report.completeExceptionally(e);
+            }
+        });
+        shutdown.start();
+        sleep(100);
+        gate.countDown();
+
+        assertTrue(report.get().completed());
+        assertEquals(0, failedOtherwise.get());
+        assertEquals(2, ran.get() + discarded.get());
+        assertEquals(discarded.get(), report.get().jobsDiscarded());
+    }
+
+    @Test(timeout = 10_000)
+    public void pending_scheduled_jobs_are_cancelled_and_counted() throws InterruptedException {
+        EventLoopGroup group = new EventLoopGroup(2, "shutdown", new EventLoopGroup.Options().backend(backend));
+        EventLoop eventLoop = group.assignEventLoop();
+        long later = GlobalSystem.time() + 60_000;
+        List<EventLoop.ScheduledJob> scheduled = new ArrayList<>();
+        for (int i = 0; i < 5; i++) scheduled.add(eventLoop.submit(later + i, ran::incrementAndGet, e -> {}));
+        scheduled.get(0).cancel();
+        scheduled.get(1).cancel();
+
+        EventLoopGroup.ShutdownReport report = group.shutdown(policy, 5_000);
+
+        assertTrue(report.completed());
+        assertEquals(3, report.scheduledJobsCancelled());
+        assertEquals(0, ran.get());
+    }
+
+    private void submit(EventLoop eventLoop, Runnable job) {
+        eventLoop.submit(() -> {
+            job.run();
+            ran.incrementAndGet();
+        }, e -> {
+            if (e instanceof RejectedExecutionException) discarded.incrementAndGet();
+            else failedOtherwise.incrementAndGet();
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
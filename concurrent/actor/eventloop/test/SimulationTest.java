@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationTest {
+
+    @Test
+    public void runs_with_the_same_seed_are_identical() {
+        List<Long> trace = run(1);
+        assertFalse(trace.isEmpty());
+        assertEquals(trace, run(1));
+        assertNotEquals(trace, run(2));
+    }
+
+    @Test
+    public void closing_restores_the_previous_clock_and_random() {
+        Random random = new Random();
+        GlobalSystem.setRandom(random);
+        try {
+            try (Simulation simulation = new Simulation(0, 1)) {
+                simulation.runFor(1_000);
+                assertEquals(1_000, GlobalSystem.time());
+            }
+            assertSame(random, GlobalSystem.random());
+            assertTrue(Math.abs(System.currentTimeMillis() - GlobalSystem.time()) < 60_000);
+        } finally {
+            GlobalSystem.setRandom(null);
+        }
+    }
+
+    /**
+     * @return the virtual times and random numbers seen by jobs which schedule each other at random intervals
+     */
+    private static List<Long> run(long seed) {
+        List<Long> trace = new ArrayList<>();
+        try (Simulation simulation = new Simulation(0, seed)) {
+            EventLoopGroup group = simulation.group(2, "simulation", new EventLoopGroup.Options().seed(seed));
+            for (int i = 0; i < 4; i++) {
+                EventLoop eventLoop = group.assignEventLoop();
+                eventLoop.submitWithFixedDelay(i, 10, () -> {
+                    trace.add(GlobalSystem.time());
+                    long delay = GlobalSystem.random().nextInt(50);
+                    trace.add(delay);
+                    eventLoop.submit(GlobalSystem.time() + delay, () -> trace.add(-GlobalSystem.time()), e -> {});
+                }, e -> {});
+            }
+            simulation.runFor(1_000);
+        }
+        return trace;
+    }
+}
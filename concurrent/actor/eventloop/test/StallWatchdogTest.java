@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+public class StallWatchdogTest {
+
+    @Test(timeout = 5_000)
+    public void stalls_of_jobs_owned_by_anonymous_classes_are_all_reported() throws InterruptedException {
+        EventLoopGroup group = new EventLoopGroup(1, "watchdog", new EventLoopGroup.Options()
+                .metrics(true).watchdog(20));
+        EventLoop eventLoop = group.assignEventLoop();
+        EventLoopGroupMetrics metrics = group.metrics();
+        for (int stalls = 1; stalls <= 2; stalls++) {
+            CountDownLatch reported = new CountDownLatch(1);
+            long expected = stalls;
+            eventLoop.submit(() -> {
+                eventLoop.runningFor(new Object() {});
+                while (metrics.stalls() < expected) sleep(1); // the sampler would stop for good on a failed report
+                reported.countDown();
+            }, e -> {});
+            reported.await();
+        }
+        group.stop();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
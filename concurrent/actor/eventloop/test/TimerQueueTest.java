@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor.eventloop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link HashedTimingWheel} and {@link LogicalTimerQueue} through the same random sequences of operations,
+ * and checks that they expire the same timers at the same times.
+ */
+public class TimerQueueTest {
+    private static final int STEPS = 20_000;
+
+    @Test
+    public void wheel_expires_the_same_timers_as_heap() {
+        for (long seed = 0; seed < 20; seed++) {
+            compare(seed);
+        }
+    }
+
+    @Test
+    public void timers_expire_in_deadline_order() {
+        for (TimerQueue<Integer> queue : queues(1000)) {
+            queue.offer(1300, 3);
+            queue.offer(1100, 1);
+            queue.offer(1200, 2);
+            queue.offer(1000, 0); // already due
+            assertEquals(Integer.valueOf(0), queue.poll(1000));
+            assertNull(queue.poll(1099));
+            assertEquals(Integer.valueOf(1), queue.poll(1250));
+            assertEquals(Integer.valueOf(2), queue.poll(1250));
+            assertNull(queue.poll(1250));
+            assertEquals(Integer.valueOf(3), queue.poll(5000));
+            assertNull(queue.poll(5000));
+        }
+    }
+
+    @Test
+    public void cancelled_timers_never_expire() {
+        for (TimerQueue<Integer> queue : queues(0)) {
+            TimerQueue.Timer cancelled = queue.offer(10, 1);
+            queue.offer(20, 2);
+            cancelled.cancel();
+            assertTrue(cancelled.isCancelled());
+            assertEquals(Integer.valueOf(2), queue.poll(100));
+            assertNull(queue.poll(100));
+        }
+    }
+
+    @Test
+    public void polled_timers_can_be_rescheduled() {
+        for (TimerQueue<Integer> queue : queues(0)) {
+            TimerQueue.Timer timer = queue.offer(10, 1);
+            assertEquals(Integer.valueOf(1), queue.poll(10));
+            timer.reschedule(100_000);
+            assertNull(queue.poll(99_999));
+            assertEquals(Integer.valueOf(1), queue.poll(100_000));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void polling_at_the_end_of_time_drains_every_timer() {
+        for (TimerQueue<Integer> queue : queues(0)) {
+            queue.offer(0, 0);
+            queue.offer(1L << 20, 1);
+            queue.offer(1L << 45, 2); // beyond the range of the wheel
+            List<Integer> polled = new ArrayList<>();
+            Integer value;
+            while ((value = queue.poll(Long.MAX_VALUE)) != null) polled.add(value);
+            assertEquals(3, polled.size());
+            assertEquals(0, queue.size());
+        }
+    }
+
+    private static void compare(long seed) {
+        Random random = new Random(seed);
+        long currentMillis = random.nextInt(1_000_000);
+        TimerQueue<Integer> heap = new LogicalTimerQueue<>();
+        TimerQueue<Integer> wheel = new HashedTimingWheel<>(currentMillis);
+        List<TimerQueue.Timer[]> timers = new ArrayList<>(); // the heap's and the wheel's timer of each value
+        List<Long> deadlines = new ArrayList<>();
+        List<Integer> queued = new ArrayList<>();
+        List<Integer> polled = new ArrayList<>();
+
+        for (int step = 0; step < STEPS; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                long deadline = currentMillis + delay(random);
+                int value = timers.size();
+                timers.add(new TimerQueue.Timer[] {heap.offer(deadline, value), wheel.offer(deadline, value)});
+                deadlines.add(deadline);
+                queued.add(value);
+            } else if (operation < 6 && !queued.isEmpty()) {
+                int value = queued.remove(random.nextInt(queued.size()));
+                timers.get(value)[0].cancel();
+                timers.get(value)[1].cancel();
+            } else if (operation < 7 && !polled.isEmpty()) {
+                int value = polled.remove(random.nextInt(polled.size()));
+                long deadline = currentMillis + delay(random);
+                timers.get(value)[0].reschedule(deadline);
+                timers.get(value)[1].reschedule(deadline);
+                deadlines.set(value, deadline);
+                queued.add(value);
+            } else {
+                currentMillis += random.nextInt(random.nextInt(20) == 0 ? 100_000 : 300);
+                List<Integer> fromHeap = pollAll(heap, currentMillis);
+                List<Integer> fromWheel = pollAll(wheel, currentMillis);
+                String context = "seed " + seed + " at " + currentMillis;
+                assertEquals(context, sorted(fromHeap), sorted(fromWheel));
+                assertDeadlineOrder(context, fromWheel, deadlines, currentMillis);
+                queued.removeAll(fromHeap);
+                polled.addAll(fromHeap);
+                for (Integer value : queued) assertTrue(context, deadlines.get(value) > currentMillis);
+            }
+        }
+        List<Integer> rest = pollAll(heap, Long.MAX_VALUE);
+        assertEquals("seed " + seed, sorted(rest), sorted(pollAll(wheel, Long.MAX_VALUE)));
+        assertEquals(sorted(queued), sorted(rest));
+    }
+
+    private static void assertDeadlineOrder(String context, List<Integer> expired, List<Long> deadlines,
+                                            long currentMillis) {
+        long previous = Long.MIN_VALUE;
+        for (Integer value : expired) {
+            long deadline = deadlines.get(value);
+            assertTrue(context, deadline >= previous && deadline <= currentMillis);
+            previous = deadline;
+        }
+    }
+
+    private static long delay(Random random) {
+        switch (random.nextInt(4)) {
+            case 0: return -random.nextInt(10); // already due
+            case 1: return random.nextInt(64);
+            case 2: return random.nextInt(1 << 16);
+            default: return random.nextInt(1 << 30);
+        }
+    }
+
+    private static List<Integer> pollAll(TimerQueue<Integer> queue, long currentMillis) {
+        List<Integer> values = new ArrayList<>();
+        Integer value;
+        while ((value = queue.poll(currentMillis)) != null) values.add(value);
+        return values;
+    }
+
+    private static List<Integer> sorted(List<Integer> values) {
+        List<Integer> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static List<TimerQueue<Integer>> queues(long currentMillis) {
+        List<TimerQueue<Integer>> queues = new ArrayList<>();
+        queues.add(new LogicalTimerQueue<>());
+        queues.add(new HashedTimingWheel<>(currentMillis));
+        return queues;
+    }
+}
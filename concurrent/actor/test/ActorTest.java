@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor;
+
+import grakn.common.concurrent.actor.eventloop.EventLoopGroup;
+import grakn.common.concurrent.actor.eventloop.GlobalSystem;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ActorTest {
+    private static final long TIMEOUT_MS = 5_000;
+
+    private EventLoopGroup group = new EventLoopGroup(2, "actor");
+
+    @After
+    public void stop() throws InterruptedException {
+        group.stop();
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void offload_runs_the_blocking_work_off_the_event_loop_and_continues_on_it() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        Thread eventLoopThread = actor.ask(state -> Thread.currentThread()).get();
+        CompletableFuture<List<Thread>> threads = new CompletableFuture<>();
+        actor.tell(state -> state.self().offload(Thread::currentThread, (continued, blockingThread) -> {
+            List<Thread> seen = new ArrayList<>();
+            seen.add(blockingThread);
+            seen.add(Thread.currentThread());
+            threads.complete(seen);
+        }));
+        assertNotEquals(eventLoopThread, threads.get().get(0));
+        assertEquals(eventLoopThread, threads.get().get(1));
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void offload_passes_the_failure_of_the_blocking_work_to_the_state() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        IOException failure = new IOException("disk on fire");
+        actor.tell(state -> state.self().offload(() -> {
+            throw failure;
+        }, (continued, result) -> continued.record(result)));
+        Recorder state = actor.state;
+        while (state.exceptions.isEmpty()) TimeUnit.MILLISECONDS.sleep(1);
+        assertEquals(failure, state.exceptions.get(0));
+        assertTrue(actor.ask(s -> s.seen.isEmpty()).get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void tell_before_sheds_jobs_the_actor_reaches_after_their_deadline() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        actor.tell(state -> sleep(100));
+        actor.tellBefore(GlobalSystem.time() + 20, state -> state.record("late"));
+        actor.tellBefore(GlobalSystem.time() + 60_000, state -> state.record("in time"));
+        assertEquals(asList("in time"), actor.ask(state -> state.seen).get());
+        assertEquals(1, actor.eventLoop().jobsShed());
+        assertTrue(actor.state.exceptions.isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void ask_before_times_out_while_the_job_runs_and_not_on_the_timer_thread() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        CompletableFuture<Thread> timedOutOn = new CompletableFuture<>();
+        actor.askBefore(GlobalSystem.time() + 20, state -> {
+            sleep(300);
+            return "too late";
+        }).whenComplete((answer, e) -> {
+            if (e instanceof TimeoutException) timedOutOn.complete(Thread.currentThread());
+            else timedOutOn.completeExceptionally(new AssertionError("answered " + answer));
+        });
+        assertFalse(timedOutOn.get(200, TimeUnit.MILLISECONDS).getName().startsWith("actor::timer"));
+        assertTrue(actor.state.exceptions.isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void tell_coalescing_runs_only_the_latest_job_for_a_key_the_actor_has_not_reached() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        CountDownLatch gate = new CountDownLatch(1);
+        actor.tell(state -> await(gate));
+        for (int i = 0; i < 3; i++) {
+            int value = i;
+            actor.tellCoalescing("a", state -> state.record("a" + value));
+        }
+        actor.tellCoalescing("b", state -> state.record("b"));
+        gate.countDown();
+        assertEquals(asList("a2", "b"), actor.ask(state -> new ArrayList<>(state.seen)).get());
+        actor.tellCoalescing("a", state -> state.record("a again"));
+        assertEquals(asList("a2", "b", "a again"), actor.ask(state -> state.seen).get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void tell_coalescing_merges_a_pending_job_with_the_latest() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        CountDownLatch gate = new CountDownLatch(1);
+        actor.tell(state -> await(gate));
+        for (int i = 0; i < 3; i++) {
+            int value = i;
+            actor.tellCoalescing("a", state -> state.record(value), (pending, latest) -> pending.andThen(latest));
+        }
+        gate.countDown();
+        assertEquals(asList(0, 1, 2), actor.ask(state -> state.seen).get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void tell_coalescing_keeps_its_order_among_the_jobs_the_actor_tells_itself() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        CompletableFuture<List<Object>> seen = new CompletableFuture<>();
+        actor.tell(state -> {
+            state.self().tellCoalescing("a", s -> s.record("coalesced"));
+            state.self().tell(s -> {
+                s.record("told");
+                seen.complete(new ArrayList<>(s.seen));
+            });
+        });
+        assertEquals(asList("coalesced", "told"), seen.get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void callback_ask_passes_the_answer_to_the_asker_on_its_event_loop() throws Exception {
+        Actor<Recorder> asker = Actor.create(group, Recorder::new);
+        Actor<Recorder> answerer = Actor.create(group, Recorder::new);
+        assertNotEquals(asker.eventLoop(), answerer.eventLoop());
+        Thread askerThread = asker.ask(state -> Thread.currentThread()).get();
+        CompletableFuture<Thread> answeredOn = new CompletableFuture<>();
+        asker.tell(state -> answerer.ask(s -> "answer", asker, (s, answer) -> {
+            s.record(answer);
+            answeredOn.complete(Thread.currentThread());
+        }));
+        assertEquals(askerThread, answeredOn.get());
+        assertEquals(asList("answer"), asker.ask(state -> state.seen).get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void callback_ask_passes_the_failure_of_the_job_to_both_actors() throws Exception {
+        Actor<Recorder> asker = Actor.create(group, Recorder::new);
+        Actor<Recorder> answerer = Actor.create(group, Recorder::new);
+        IllegalStateException failure = new IllegalStateException("no answer");
+        answerer.ask(state -> {
+            throw failure;
+        }, asker, (state, answer) -> state.record(answer));
+        while (asker.state.exceptions.isEmpty()) TimeUnit.MILLISECONDS.sleep(1);
+        assertEquals(asList(failure), asker.state.exceptions);
+        assertEquals(asList(failure), answerer.state.exceptions);
+        assertTrue(asker.ask(state -> state.seen.isEmpty()).get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void messages_between_actors_sharing_an_event_loop_keep_their_order() throws Exception {
+        Actor<Recorder> sender = Actor.create(group, Recorder::new);
+        Actor<Recorder> receiver = Actor.create(group, sender.eventLoop(), Recorder::new);
+        receiver.tell(state -> state.record("from outside"));
+        sender.tell(state -> {
+            for (int i = 0; i < 100; i++) {
+                int message = i;
+                receiver.tell(s -> s.record(message));
+            }
+        });
+        // taken from the mailbox after the message from outside, so what the sender tells comes after it too
+        List<Object> expected = new ArrayList<>();
+        expected.add("from outside");
+        for (int i = 0; i < 100; i++) expected.add(i);
+        while (receiver.ask(state -> state.seen.size()).get() < expected.size()) TimeUnit.MILLISECONDS.sleep(1);
+        assertEquals(expected, receiver.ask(state -> state.seen).get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void ask_all_reduces_the_answers_of_every_actor() throws Exception {
+        List<Actor<Recorder>> actors = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Actor<Recorder> actor = Actor.create(group, Recorder::new);
+            for (int j = 0; j <= i; j++) actor.tell(state -> state.record("message"));
+            actors.add(actor);
+        }
+        CompletableFuture<Integer> messages = Actor.askAll(actors, state -> state.seen.size(), 0, Integer::sum,
+                                                           Integer::sum);
+        assertEquals(1 + 2 + 3 + 4 + 5 + 6, (int) messages.get());
+        assertEquals(0, (int) Actor.askAll(new ArrayList<Actor<Recorder>>(), state -> 1, 0, Integer::sum,
+                                           Integer::sum).get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void ask_all_fails_with_the_failure_of_the_job_and_passes_it_to_that_actor_only() throws Exception {
+        Actor<Recorder> failing = Actor.create(group, Recorder::new);
+        Actor<Recorder> answering = Actor.create(group, Recorder::new);
+        IllegalStateException failure = new IllegalStateException("no answer");
+        CompletableFuture<Integer> result = Actor.askAll(asList(failing, answering), state -> {
+            if (state == failing.state) throw failure;
+            return 1;
+        }, 0, Integer::sum, Integer::sum);
+        assertEquals(failure, failure(result));
+        assertEquals(asList(failure), failing.state.exceptions);
+        assertTrue(answering.state.exceptions.isEmpty());
+
+        IllegalArgumentException reducerFailure = new IllegalArgumentException("cannot reduce");
+        CompletableFuture<Integer> reduced = Actor.askAll(asList(failing, answering), state -> 1, 0, (sum, answer) -> {
+            throw reducerFailure;
+        }, Integer::sum);
+        assertEquals(reducerFailure, failure(reduced));
+        assertEquals(asList(failure), failing.state.exceptions);
+        assertTrue(answering.state.exceptions.isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void ask_all_completes_on_the_given_executor() throws Exception {
+        List<Actor<Recorder>> actors = asList(Actor.create(group, Recorder::new), Actor.create(group, Recorder::new));
+        CompletableFuture<Thread> completedOn = new CompletableFuture<>();
+        Executor executor = command -> new Thread(() -> {
+            command.run();
+            completedOn.complete(Thread.currentThread());
+        }, "completion").start();
+        assertEquals(2, (int) Actor.askAll(actors, state -> 1, 0, Integer::sum, Integer::sum, executor).get());
+        assertEquals("completion", completedOn.get().getName());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void urgent_messages_run_ahead_of_those_waiting_in_the_mailbox() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        CountDownLatch gate = new CountDownLatch(1);
+        actor.tell(state -> await(gate));
+        actor.tell(state -> state.record("told"));
+        actor.tellUrgent(state -> state.record("urgent"));
+        CompletableFuture<List<Object>> askedUrgently = actor.askUrgent(state -> new ArrayList<>(state.seen));
+        gate.countDown();
+        assertEquals(asList("urgent"), askedUrgently.get());
+        assertEquals(asList("urgent", "told"), actor.ask(state -> state.seen).get());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void urgent_messages_do_not_starve_the_mailbox() throws Exception {
+        Actor<Recorder> actor = Actor.create(group, Recorder::new);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        actor.tell(state -> {
+            blocked.countDown();
+            await(gate);
+        });
+        blocked.await(); // or urgent messages would run ahead of the gate too
+        actor.tell(state -> state.record("told"));
+        for (int i = 0; i < 200; i++) actor.tellUrgent(state -> state.record("urgent"));
+        gate.countDown();
+        while (actor.ask(state -> state.seen.size()).get() < 201) TimeUnit.MILLISECONDS.sleep(1);
+        List<Object> seen = actor.ask(state -> state.seen).get();
+        assertTrue("told after " + seen.indexOf("told") + " urgent messages", seen.indexOf("told") <= 64);
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("completed normally");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Records the messages it is told, on its event loop, and the exceptions passed to it.
+     */
+    private static class Recorder extends Actor.State<Recorder> {
+        private final List<Object> seen = new ArrayList<>(); // only touched by the actor's event loop
+        private final List<Exception> exceptions = new CopyOnWriteArrayList<>();
+
+        private Recorder(Actor<Recorder> self) {
+            super(self);
+        }
+
+        private void record(Object message) {
+            seen.add(message);
+        }
+
+        @Override
+        protected void exception(Exception e) {
+            exceptions.add(e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 Grakn Labs
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package grakn.common.concurrent.actor;
+
+import grakn.common.concurrent.actor.eventloop.EventLoopGroup;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RouterTest {
+    private static final long TIMEOUT_MS = 5_000;
+    private static final int KEYS = 1_000;
+
+    private EventLoopGroup group = new EventLoopGroup(2, "router");
+
+    @After
+    public void stop() throws InterruptedException {
+        group.stop();
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void messages_with_the_same_key_go_to_the_same_replica_in_order() throws Exception {
+        Router<Replica> router = Router.create(group, 4, Router.Routing.ROUND_ROBIN, Replica::new);
+        for (int i = 0; i < 100; i++) {
+            int message = i;
+            router.tell("key", state -> state.received.add(message));
+        }
+        List<Integer> received = router.ask("key", state -> state.received).get();
+        assertEquals(100, received.size());
+        for (int i = 0; i < 100; i++) assertEquals(i, (int) received.get(i));
+    }
+
+    @Test
+    public void resizing_only_moves_the_keys_of_the_replicas_added_or_removed() {
+        Router<Replica> router = Router.create(group, 4, Router.Routing.ROUND_ROBIN, Replica::new);
+        List<Actor<Replica>> before = owners(router);
+        router.resize(5);
+        List<Actor<Replica>> grown = owners(router);
+        Actor<Replica> added = router.replicas().get(4);
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            if (grown.get(key) == before.get(key)) continue;
+            assertEquals(added, grown.get(key));
+            moved++;
+        }
+        assertTrue("moved " + moved + " keys", moved > 0 && moved < KEYS / 2);
+        router.resize(4);
+        assertEquals(before, owners(router));
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void least_queue_depth_counts_a_message_done_once_when_the_state_throws_on_its_failure() throws Exception {
+        Router<Replica> router = Router.create(group, 2, Router.Routing.LEAST_QUEUE_DEPTH, Replica::new);
+        router.tell(state -> {
+            throw new IllegalStateException("failing message");
+        });
+        Actor<Replica> failed = router.replicas().get(0);
+        while (!failed.ask(state -> state.failed).get()) Thread.sleep(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) router.tell(state -> await(gate)); // one for each replica
+        // a replica whose failed message was counted done twice would now look less busy than the other
+        Set<Actor<Replica>> routed = new HashSet<>();
+        for (int i = 0; i < 4; i++) routed.add(router.route());
+        gate.countDown();
+        assertEquals(new HashSet<>(router.replicas()), routed);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<Actor<Replica>> owners(Router<Replica> router) {
+        List<Actor<Replica>> owners = new ArrayList<>();
+        for (int key = 0; key < KEYS; key++) owners.add(router.route(key));
+        return owners;
+    }
+
+    /**
+     * Records the messages it receives, and throws from its exception handler the first time it is called.
+     */
+    private static class Replica extends Actor.State<Replica> {
+        private final List<Integer> received = new ArrayList<>();
+        private boolean failed;
+
+        private Replica(Actor<Replica> self) {
+            super(self);
+        }
+
+        @Override
+        protected void exception(Exception e) {
+            if (failed) return;
+            failed = true;
+            throw new IllegalStateException("failed to handle the failure", e);
+        }
+    }
+}